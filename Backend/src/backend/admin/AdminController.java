@@ -1,5 +1,6 @@
 package backend.admin;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -14,6 +15,8 @@ import javafx.geometry.Insets;
 
 import backend.models.Product;
 import backend.models.Inventory;
+import backend.models.OrderRecord;
+import backend.models.OrderStore;
 import backend.network.ShopServer;
 
 import java.net.URL;
@@ -22,10 +25,13 @@ import java.util.List;
 import java.util.Optional;
 import java.io.*;
 import java.util.ArrayList;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AdminController implements Initializable {
     
@@ -49,7 +55,7 @@ public class AdminController implements Initializable {
     @FXML private Label orderCountLabel;
     @FXML private Button proceedOrderButton;
     @FXML private Button removeOrderButton;
-    @FXML private ComboBox<OrderInfo> orderSelector;
+    @FXML private ComboBox<OrderRecord> orderSelector;
     
     // Server Status
     @FXML private Label serverStatusLabel;
@@ -60,10 +66,50 @@ public class AdminController implements Initializable {
     private ObservableList<Product> productList = FXCollections.observableArrayList();
     private ShopServer server;
     private Thread serverThread;
-    private boolean serverRunning = false;
+    private volatile boolean serverRunning = false;
     
-    // Store parsed orders for management
-    private List<OrderInfo> parsedOrders = new ArrayList<>();
+    // Orders handed to the FX thread per Platform.runLater
+    private static final int ORDER_UI_BATCH = 500;
+    
+    // Pending orders shown for management. Only touched on the order loader thread,
+    // which tails the order store and passes finished batches to the FX thread
+    private final Map<Long, OrderRecord> pendingOrders = new LinkedHashMap<>();
+    private final ExecutorService orderLoader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Admin-OrderLoader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private OrderStore orderStore;
+    private OrderStore tailedStore;
+    private OrderStore.Tail orderTail;
+    
+    // Events from the in-process server only set flags / queue orders here;
+    // uiPulse applies them at most once per JavaFX frame
+    private final AtomicBoolean productsChanged = new AtomicBoolean(false);
+    private final AtomicBoolean clientsChanged = new AtomicBoolean(false);
+    private final ConcurrentLinkedQueue<OrderRecord> confirmedOrders = new ConcurrentLinkedQueue<>();
+    private AnimationTimer uiPulse;
+    private final ShopServer.ServerEventListener serverEvents = new ShopServer.ServerEventListener() {
+        @Override
+        public void onOrderConfirmed(OrderRecord order) {
+            confirmedOrders.add(order);
+        }
+
+        @Override
+        public void onStockChanged(List<Product> changed, List<String> removed, long version) {
+            productsChanged.set(true);
+        }
+
+        @Override
+        public void onClientConnected(String clientId, int clientCount) {
+            clientsChanged.set(true);
+        }
+
+        @Override
+        public void onClientDisconnected(String clientId, int clientCount) {
+            clientsChanged.set(true);
+        }
+    };
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -75,6 +121,7 @@ public class AdminController implements Initializable {
         
         // Set up auto-refresh every 30 seconds
         startAutoRefresh();
+        startUiPulse();
         
         // Initialize order management
         setupOrderManagement();
@@ -93,41 +140,6 @@ public class AdminController implements Initializable {
         });
     }
 
-    // Inner class to represent order information
-    private static class OrderInfo {
-        private String orderTime;
-        private String customer;
-        private String address;
-        private String contact;
-        private String postCode;
-        private String username;
-        private String items;
-        private String total;
-        private String fullOrderText;
-        
-        public OrderInfo(String orderTime, String customer, String fullOrderText) {
-            this.orderTime = orderTime;
-            this.customer = customer;
-            this.fullOrderText = fullOrderText;
-        }
-        
-        @Override
-        public String toString() {
-            return orderTime + " - " + customer;
-        }
-        
-        // Getters
-        public String getOrderTime() { return orderTime; }
-        public String getCustomer() { return customer; }
-        public String getFullOrderText() { return fullOrderText; }
-        public void setAddress(String address) { this.address = address; }
-        public void setContact(String contact) { this.contact = contact; }
-        public void setPostCode(String postCode) { this.postCode = postCode; }
-        public void setUsername(String username) { this.username = username; }
-        public void setItems(String items) { this.items = items; }
-        public void setTotal(String total) { this.total = total; }
-    }
-
     private void setupProductTable() {
         productIdColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
         productNameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
@@ -197,7 +209,11 @@ public class AdminController implements Initializable {
                 Inventory.setProductsFilePath(absolutePath);
                 Inventory.setDescriptionFilePath(descriptionPath);
                 
-                Inventory.loadFromFile();
+                // While the server runs its in-memory inventory is authoritative (recent
+                // stock changes may only be in the stock log), so don't reparse the file
+                if (server == null || !serverRunning) {
+                    Inventory.loadFromFile();
+                }
                 List<Product> products = Inventory.getAllProducts();
                 productList.clear();
                 productList.addAll(products);
@@ -283,14 +299,14 @@ public class AdminController implements Initializable {
         try {
             // Update the product in memory
             product.setStockQuantity(newStock);
-            Inventory.saveToFile();
 
             // Broadcast inventory update to all clients if server is running
             if (server != null && serverRunning) {
-                server.refreshInventoryFromFile();
-                server.broadcastInventoryUpdateMessage();
+                server.setProductStock(product.getId(), newStock);
                 System.out.println("🔄 Stock update broadcasted to all clients");
                 System.out.println("📡 Updated " + product.getName() + " stock to " + newStock);
+            } else {
+                Inventory.saveToFile();
             }
 
             // Refresh the admin panel display
@@ -510,27 +526,26 @@ public class AdminController implements Initializable {
 
             Product newProduct = new Product(productArray, description);
 
-            // Add to products.txt file
-            appendProductToFile(newProduct);
-
             // Add description to descriptions.txt file
             appendDescriptionToFile(id, description);
 
-            // Reload inventory and refresh display
-            Inventory.loadFromFile();
-            List<Product> products = Inventory.getAllProducts();
-            productList.clear();
-            productList.addAll(products);
-            filterProducts();
-
-            // Broadcast inventory update if server is running
             if (server != null && serverRunning) {
-                server.refreshInventoryFromFile();
-                server.broadcastInventoryUpdateMessage();
+                // The server adds it in memory, writes products.txt and broadcasts it
+                server.addProduct(newProduct);
                 System.out.println(" New product broadcasted to all clients");
                 System.out.println(" Added new product: " + name + " (" + id + ")");
+            } else {
+                // Add to products.txt file and reload
+                appendProductToFile(newProduct);
+                Inventory.loadFromFile();
             }
 
+            // Refresh display
+            List<Product> products = Inventory.getAllProducts();
+            productList.clear();
+            productList.addAll(products);
+            filterProducts();
+
             showAlert("Success", String.format("Product added successfully!\n\nID: %s\nName: %s\nCategory: %s\nPrice: $%.2f\nStock: %d\nBroadcasted to %d clients", id, name, category, price, stock, server != null ? server.getClientCount() : 0));
             System.out.println("New product added: " + name + " (" + id + ") with description");
         } catch (Exception e) {
@@ -583,109 +598,109 @@ public class AdminController implements Initializable {
 
     @FXML
     private void loadOrders() {
-        Platform.runLater(() -> {
+        orderLoader.execute(() -> {
             try {
-                File ordersFile = new File("Backend/data/orders.txt");
-                
-                System.out.println("Trying to load orders from: " + ordersFile.getAbsolutePath());
+                OrderStore store = getOrderStore();
+                if (store != tailedStore) {
+                    // Switched between our store and the server's: start over
+                    tailedStore = store;
+                    orderTail = null;
+                }
                 
-                if (!ordersFile.exists()) {
-                    ordersTextArea.setText("No orders file found at: " + ordersFile.getAbsolutePath());
-                    orderCountLabel.setText("Orders: 0");
-                    orderSelector.getItems().clear();
-                    parsedOrders.clear();
-                    System.out.println("Orders file does not exist: " + ordersFile.getAbsolutePath());
+                // Only what was appended since the last call is read
+                OrderStore.Tail tail = store.tail(orderTail);
+                orderTail = tail;
+                if (tail.isEmpty()) {
                     return;
                 }
                 
-                StringBuilder content = new StringBuilder();
-                parsedOrders.clear();
-                orderSelector.getItems().clear();
-                
-                try (BufferedReader reader = new BufferedReader(new FileReader(ordersFile))) {
-                    String line;
-                    OrderInfo currentOrder = null;
-                    StringBuilder orderText = new StringBuilder();
-                    
-                    while ((line = reader.readLine()) != null) {
-                        content.append(line).append("\n");
-                        
-                        if (line.startsWith("Order Time:")) {
-                            // Start of a new order - save previous order if exists
-                            if (currentOrder != null) {
-                                currentOrder.fullOrderText = orderText.toString();
-                                parsedOrders.add(currentOrder);
-                                orderSelector.getItems().add(currentOrder);
-                            }
-                            
-                            String orderTime = line.substring(11).trim();
-                            currentOrder = new OrderInfo(orderTime, "", "");
-                            orderText = new StringBuilder();
-                            orderText.append(line).append("\n");
-                            
-                        } else if (line.startsWith("Customer  :") && currentOrder != null) {
-                            String customer = line.substring(11).trim();
-                            currentOrder.customer = customer;
-                            orderText.append(line).append("\n");
-                            
-                        } else if (line.startsWith("Address   :") && currentOrder != null) {
-                            currentOrder.setAddress(line.substring(11).trim());
-                            orderText.append(line).append("\n");
-                            
-                        } else if (line.startsWith("Contact   :") && currentOrder != null) {
-                            currentOrder.setContact(line.substring(11).trim());
-                            orderText.append(line).append("\n");
-                            
-                        } else if (line.startsWith("Post Code :") && currentOrder != null) {
-                            currentOrder.setPostCode(line.substring(11).trim());
-                            orderText.append(line).append("\n");
-                            
-                        } else if (line.startsWith("Username  :") && currentOrder != null) {
-                            currentOrder.setUsername(line.substring(11).trim());
-                            orderText.append(line).append("\n");
-                            
-                        } else if (line.startsWith("Total: $") && currentOrder != null) {
-                            currentOrder.setTotal(line.substring(8).trim());
-                            orderText.append(line).append("\n");
-                            
-                        } else {
-                            // Add all other lines to the order text
-                            orderText.append(line).append("\n");
-                        }
-                    }
-                    
-                    // Don't forget the last order
-                    if (currentOrder != null) {
-                        currentOrder.fullOrderText = orderText.toString();
-                        parsedOrders.add(currentOrder);
-                        orderSelector.getItems().add(currentOrder);
+                int before = pendingOrders.size();
+                List<OrderRecord> fresh = new ArrayList<>();
+                if (tail.isReset()) {
+                    pendingOrders.clear();
+                }
+                for (OrderRecord order : tail.getAdded()) {
+                    // Orders the server already pushed to us are shown once
+                    if (pendingOrders.putIfAbsent(order.getId(), order) == null) {
+                        fresh.add(order);
                     }
                 }
-                
-                if (content.length() == 0) {
-                    ordersTextArea.setText("Orders file is empty.");
-                } else {
-                    ordersTextArea.setText(content.toString());
+                boolean removed = false;
+                for (Map.Entry<Long, OrderStore.Status> change : tail.getStatusChanges().entrySet()) {
+                    if (change.getValue() != OrderStore.Status.PENDING && pendingOrders.remove(change.getKey()) != null) {
+                        removed = true;
+                    }
                 }
                 
-                orderCountLabel.setText("Orders: " + parsedOrders.size());
-                ordersTextArea.setScrollTop(Double.MAX_VALUE);
+                showOrders(fresh, tail.isReset() || removed || before == 0);
                 
-                System.out.println(" Loaded " + parsedOrders.size() + " orders from: " + ordersFile.getAbsolutePath());
+                System.out.println(" Orders: " + fresh.size() + " new, " + pendingOrders.size() + " pending"
+                        + (tail.isReset() ? " (full reload)" : ""));
                 
             } catch (IOException e) {
                 String errorMsg = "Error loading orders: " + e.getMessage();
-                ordersTextArea.setText(errorMsg);
-                orderCountLabel.setText("Orders: Error");
+                Platform.runLater(() -> {
+                    ordersTextArea.setText(errorMsg);
+                    orderCountLabel.setText("Orders: Error");
+                });
                 System.err.println(" " + errorMsg);
                 e.printStackTrace();
             }
         });
     }
 
+    // Orders pushed by the running server: shown without reading the store
+    private void showConfirmedOrders(List<OrderRecord> orders) {
+        orderLoader.execute(() -> {
+            int before = pendingOrders.size();
+            List<OrderRecord> fresh = new ArrayList<>();
+            for (OrderRecord order : orders) {
+                if (pendingOrders.putIfAbsent(order.getId(), order) == null) {
+                    fresh.add(order);
+                }
+            }
+            if (!fresh.isEmpty()) {
+                showOrders(fresh, before == 0);
+            }
+        });
+    }
+
+    /**
+     * Runs on the order loader thread. New orders are appended to what is shown;
+     * anything leaving the list (or a rotated file) redraws it, still in batches.
+     */
+    private void showOrders(List<OrderRecord> fresh, boolean redraw) {
+        List<OrderRecord> toShow = redraw ? new ArrayList<>(pendingOrders.values()) : fresh;
+        int count = pendingOrders.size();
+        
+        if (redraw) {
+            Platform.runLater(() -> {
+                orderSelector.getItems().clear();
+                ordersTextArea.setText(count == 0 ? "No pending orders." : "");
+            });
+        }
+        for (int from = 0; from < toShow.size(); from += ORDER_UI_BATCH) {
+            List<OrderRecord> batch = toShow.subList(from, Math.min(toShow.size(), from + ORDER_UI_BATCH));
+            // Same text as the old orders.txt, built here rather than on the FX thread
+            StringBuilder content = new StringBuilder(batch.size() * 256);
+            for (OrderRecord order : batch) {
+                content.append(order.toText());
+            }
+            String text = content.toString();
+            Platform.runLater(() -> {
+                orderSelector.getItems().addAll(batch);
+                ordersTextArea.appendText(text);
+            });
+        }
+        Platform.runLater(() -> {
+            orderCountLabel.setText("Orders: " + count);
+            ordersTextArea.setScrollTop(Double.MAX_VALUE);
+        });
+    }
+
     @FXML
     private void proceedOrder() {
-        OrderInfo selectedOrder = orderSelector.getValue();
+        OrderRecord selectedOrder = orderSelector.getValue();
         if (selectedOrder == null) {
             showAlert("No Selection", "Please select an order to proceed.");
             return;
@@ -699,11 +714,8 @@ public class AdminController implements Initializable {
         Optional<ButtonType> result = confirmAlert.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
             try {
-                // Add to proceeded.txt
-                addToProceededFile(selectedOrder);
-                
-                // Remove from orders.txt
-                removeOrderFromFile(selectedOrder);
+                // Tombstone in the order store, plus the proceeded.txt audit entry
+                changeOrderStatus(selectedOrder, OrderStore.Status.PROCEEDED, "Backend/data/proceeded.txt");
                 
                 // Refresh the orders display
                 loadOrders();
@@ -719,7 +731,7 @@ public class AdminController implements Initializable {
 
     @FXML
     private void removeOrder() {
-        OrderInfo selectedOrder = orderSelector.getValue();
+        OrderRecord selectedOrder = orderSelector.getValue();
         if (selectedOrder == null) {
             showAlert("No Selection", "Please select an order to remove.");
             return;
@@ -733,11 +745,8 @@ public class AdminController implements Initializable {
         Optional<ButtonType> result = confirmAlert.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
             try {
-                // Add to removed.txt
-                addToRemovedFile(selectedOrder);
-                
-                // Remove from orders.txt
-                removeOrderFromFile(selectedOrder);
+                // Tombstone in the order store, plus the removed.txt audit entry
+                changeOrderStatus(selectedOrder, OrderStore.Status.REMOVED, "Backend/data/removed.txt");
                 
                 // Refresh the orders display
                 loadOrders();
@@ -751,84 +760,30 @@ public class AdminController implements Initializable {
         }
     }
 
-    private void addToProceededFile(OrderInfo order) throws IOException {
-        File proceededFile = new File("c:/Lucius FIles/backup/Java-Project/Backend/data/proceeded.txt");
-        proceededFile.getParentFile().mkdirs();
-        
-        try (FileWriter writer = new FileWriter(proceededFile, true);
-             BufferedWriter bufferedWriter = new BufferedWriter(writer)) {
-            
-            // Add processing timestamp
-            LocalDateTime now = LocalDateTime.now();
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            
-            bufferedWriter.write("=== ORDER PROCEEDED ===\n");
-            bufferedWriter.write("Processed Time: " + now.format(formatter) + "\n");
-            bufferedWriter.write(order.getFullOrderText());
-            bufferedWriter.write("========================\n\n");
+    // The running server's store, so both sides share one index; our own otherwise
+    private OrderStore getOrderStore() throws IOException {
+        if (server != null && serverRunning && server.getOrderStore() != null) {
+            return server.getOrderStore();
         }
-        
-        System.out.println("✅ Order added to proceeded.txt");
-    }
-
-    private void addToRemovedFile(OrderInfo order) throws IOException {
-        File removedFile = new File("data/removed.txt");
-        removedFile.getParentFile().mkdirs();
-        
-        try (FileWriter writer = new FileWriter(removedFile, true);
-             BufferedWriter bufferedWriter = new BufferedWriter(writer)) {
-            
-            // Add removal timestamp
-            LocalDateTime now = LocalDateTime.now();
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            
-            bufferedWriter.write("=== ORDER REMOVED ===\n");
-            bufferedWriter.write("Removed Time: " + now.format(formatter) + "\n");
-            bufferedWriter.write(order.getFullOrderText());
-            bufferedWriter.write("=====================\n\n");
+        if (orderStore == null) {
+            orderStore = OrderStore.open(new File("Backend/data/orders.dat").getAbsolutePath());
         }
-        
-        System.out.println(" Order added to removed.txt");
+        return orderStore;
     }
 
-    private void removeOrderFromFile(OrderInfo orderToRemove) throws IOException {
-        File ordersFile = new File("data/orders.txt");
-        File tempFile = new File("Backend/data/orders_temp.txt");
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(ordersFile));
-             FileWriter writer = new FileWriter(tempFile);
-             BufferedWriter bufferedWriter = new BufferedWriter(writer)) {
-            
-            String line;
-            boolean skipOrder = false;
-            
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("Order Time:")) {
-                    // Check if this is the order to remove
-                    String orderTime = line.substring(11).trim();
-                    skipOrder = orderTime.equals(orderToRemove.getOrderTime());
-                }
-                
-                if (!skipOrder) {
-                    bufferedWriter.write(line + "\n");
-                }
-                
-                
-                if (line.equals("----------------------------------------")) {
-                    skipOrder = false;
-                }
-            }
+    // Appends a status tombstone (no file rewrite) and the order's block to the audit file
+    private void changeOrderStatus(OrderRecord order, OrderStore.Status status, String auditPath) throws IOException {
+        if (!getOrderStore().updateStatus(order.getId(), status)) {
+            throw new IOException("Order is no longer pending");
         }
         
-        // Replace original file with temp file
-        if (!ordersFile.delete()) {
-            throw new IOException("Could not delete original orders file");
-        }
-        if (!tempFile.renameTo(ordersFile)) {
-            throw new IOException("Could not rename temp file");
+        File auditFile = new File(auditPath);
+        try (FileWriter writer = new FileWriter(auditFile, true);
+             BufferedWriter bufferedWriter = new BufferedWriter(writer)) {
+            bufferedWriter.write(OrderStore.transitionText(order, status, System.currentTimeMillis()));
         }
         
-        System.out.println("Order removed from orders.txt");
+        System.out.println(" Order " + order.getId() + " marked " + status);
     }
 
     @FXML
@@ -837,8 +792,11 @@ public class AdminController implements Initializable {
             serverThread = new Thread(() -> {
                 try {
                     server = new ShopServer();
+                    server.addEventListener(serverEvents);
                     serverRunning = true;
                     Platform.runLater(() -> updateServerStatus());
+                    // The server reloaded the inventory (and replayed its stock log)
+                    loadProducts();
                     server.start();
                 } catch (Exception e) {
                     Platform.runLater(() -> {
@@ -856,6 +814,7 @@ public class AdminController implements Initializable {
     @FXML
     private void stopServer() {
         if (server != null && serverRunning) {
+            server.removeEventListener(serverEvents);
             server.stop();
             serverRunning = false;
             updateServerStatus();
@@ -889,10 +848,12 @@ public class AdminController implements Initializable {
             while (true) {
                 try {
                     Thread.sleep(30000);
-                    Platform.runLater(() -> {
+                    // A server running in this process pushes its changes instead
+                    if (!serverRunning) {
                         loadProducts();
+                        // Cheap when nothing changed: only new records are read
                         loadOrders();
-                    });
+                    }
                 } catch (InterruptedException e) {
                     break;
                 }
@@ -902,6 +863,32 @@ public class AdminController implements Initializable {
         refreshThread.start();
     }
 
+    // Applies queued server events once per pulse, however many arrived since the last frame
+    private void startUiPulse() {
+        uiPulse = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (productsChanged.getAndSet(false)) {
+                    // Rows are the live inventory objects, so this also picks up new stock levels
+                    productList.setAll(Inventory.getAllProducts());
+                    filterProducts();
+                }
+                if (clientsChanged.getAndSet(false) && server != null) {
+                    connectedClientsLabel.setText("Connected Clients: " + server.getClientCount());
+                }
+                if (!confirmedOrders.isEmpty()) {
+                    List<OrderRecord> orders = new ArrayList<>();
+                    OrderRecord order;
+                    while ((order = confirmedOrders.poll()) != null) {
+                        orders.add(order);
+                    }
+                    showConfirmedOrders(orders);
+                }
+            }
+        };
+        uiPulse.start();
+    }
+
     private void showAlert(String title, String message) {
         Platform.runLater(() -> {
             Alert alert = new Alert(Alert.AlertType.INFORMATION);
@@ -913,8 +900,18 @@ public class AdminController implements Initializable {
     }
 
     public void shutdown() {
+        if (uiPulse != null) {
+            uiPulse.stop();
+        }
         if (server != null && serverRunning) {
             server.stop();
         }
+        // Closed on the loader thread so it never races a tail in progress
+        orderLoader.execute(() -> {
+            if (orderStore != null) {
+                orderStore.close();
+            }
+        });
+        orderLoader.shutdown();
     }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package backend.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Scratch copy of the shop's data files for benchmarks. A ShopServer opened on it
+ * replays, compacts and writes its own stock log and order store, so running a
+ * benchmark never locks or rewrites anything under Backend/data.
+ */
+final class BenchData {
+    // stock.wal is copied too, so the copy starts from the same stock as the real server
+    private static final String[] FILES = { "products.txt", "descriptions.txt", "users.txt", "stock.wal" };
+
+    private BenchData() {}
+
+    static File scratchCopy() throws IOException {
+        File source = new File(System.getProperty("ezshop.dataDir", "Backend/data"));
+        Path scratch = Files.createTempDirectory("ezshop-bench");
+        for (String name : FILES) {
+            File file = new File(source, name);
+            if (file.isFile()) {
+                Files.copy(file.toPath(), scratch.resolve(name));
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            File[] files = scratch.toFile().listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            scratch.toFile().delete();
+        }, "BenchData-Cleanup"));
+        System.out.println("Benchmark data copied to " + scratch);
+        return scratch.toFile();
+    }
+}
@@ -0,0 +1,62 @@
+package backend.bench;
+
+import java.util.List;
+
+import backend.models.Product;
+import backend.network.Message;
+import backend.network.MessageFrames;
+import backend.network.ServerMode;
+import backend.network.ShopServer;
+
+/**
+ * Encoding cost of one INVENTORY_UPDATE broadcast.
+ * Compares encoding the message once per recipient (how broadcasts used to work)
+ * with MessageFrames.Shared, which encodes each wire format once and hands every
+ * recipient the same bytes. Nothing is sent; only the encoding is measured. The
+ * server runs on a scratch copy of Backend/data.
+ *
+ * Usage (run from the project root so Backend/data is found):
+ *   java -cp bin backend.bench.BroadcastEncodingBench [clients] [broadcasts]
+ */
+public class BroadcastEncodingBench {
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int broadcasts = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        ShopServer server = new ShopServer(ServerMode.THREADED, BenchData.scratchCopy());
+        List<Product> products = server.getInventory();
+        Message update = new Message("INVENTORY_UPDATE", products);
+
+        System.out.println(products.size() + " products, " + clients + " clients, " + broadcasts + " broadcasts");
+        for (byte version : new byte[] { MessageFrames.VERSION_SERIALIZED, MessageFrames.VERSION_BINARY,
+                MessageFrames.VERSION_COMPRESSED, MessageFrames.VERSION_DICTIONARY }) {
+            // Warm up both paths before timing
+            run(update, version, clients, 5, false);
+            run(update, version, clients, 5, true);
+
+            long perClient = run(update, version, clients, broadcasts, false);
+            long shared = run(update, version, clients, broadcasts, true);
+            System.out.println("Protocol v" + version + ": " + MessageFrames.encode(update, version).length + " bytes, per client "
+                    + (perClient / broadcasts / 1000) + " us/broadcast, shared " + (shared / broadcasts / 1000) + " us/broadcast");
+        }
+        server.stop();
+        System.exit(0);
+    }
+
+    private static long run(Message message, byte version, int clients, int broadcasts, boolean shared) throws Exception {
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int b = 0; b < broadcasts; b++) {
+            MessageFrames.Shared frames = new MessageFrames.Shared(message);
+            for (int c = 0; c < clients; c++) {
+                byte[] frame = shared ? frames.frame(version) : MessageFrames.encode(message, version);
+                bytes += frame.length;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (bytes == 0) {
+            throw new IllegalStateException("Nothing encoded");
+        }
+        return elapsed;
+    }
+}
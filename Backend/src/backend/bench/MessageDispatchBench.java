@@ -0,0 +1,113 @@
+package backend.bench;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import backend.models.Product;
+import backend.network.Message;
+
+/**
+ * Per-message cost of getting from a received object to its handler.
+ * "reflective" is how both ends used to do it: Class.getMethod + invoke for
+ * getType/getData, a copied Message, a switch on the type, and eight reflective
+ * getter calls per product to rebuild it through the String[] constructor.
+ * "direct" is the current path: a cast, one map lookup, and the products as is.
+ * No I/O or decoding is included; only the dispatch.
+ *
+ * Usage:
+ *   java -cp bin backend.bench.MessageDispatchBench [messages] [productsPerChunk]
+ */
+public class MessageDispatchBench {
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int productsPerChunk = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        ArrayList<Product> chunk = new ArrayList<>();
+        for (int i = 0; i < productsPerChunk; i++) {
+            chunk.add(new Product("P" + i, "Item " + i, "Electronics", 10.5 + i, "Description " + i,
+                    "/images/Electronics/x" + i + ".jpeg", 100 + i, true));
+        }
+        Message pong = new Message("PONG", "Server alive");
+        Message inventory = new Message("INVENTORY_CHUNK", chunk);
+
+        Map<String, Consumer<Object>> handlers = new HashMap<>();
+        handlers.put("PONG", data -> sink++);
+        handlers.put("INVENTORY_CHUNK", data -> {
+            for (Object product : (List<?>) data) {
+                sink += ((Product) product).getStockQuantity();
+            }
+        });
+
+        for (Message message : new Message[] { pong, inventory }) {
+            // Warm up both paths before timing
+            reflective(message, messages / 10);
+            direct(message, handlers, messages / 10);
+
+            long before = reflective(message, messages);
+            long after = direct(message, handlers, messages);
+            System.out.println(message.getType() + ": reflective " + (before / messages) + " ns/message, direct "
+                    + (after / messages) + " ns/message");
+        }
+        if (sink == 0) {
+            throw new IllegalStateException("Nothing dispatched");
+        }
+    }
+
+    private static long reflective(Object received, int count) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Method getType = received.getClass().getMethod("getType");
+            Method getData = received.getClass().getMethod("getData");
+            Message copy = new Message((String) getType.invoke(received), getData.invoke(received));
+            switch (copy.getType()) {
+                case "PONG":
+                    sink++;
+                    break;
+                case "INVENTORY_CHUNK":
+                    for (Object product : (List<?>) copy.getData()) {
+                        sink += convertViaReflection(product).getStockQuantity();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long direct(Object received, Map<String, Consumer<Object>> handlers, int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Message message = (Message) received;
+            Consumer<Object> handler = handlers.get(message.getType());
+            if (handler != null) {
+                handler.accept(message.getData());
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    // The conversion the client used to run on every received product
+    private static Product convertViaReflection(Object serverProduct) throws Exception {
+        Class<?> serverClass = serverProduct.getClass();
+        String id = (String) serverClass.getMethod("getId").invoke(serverProduct);
+        String name = (String) serverClass.getMethod("getName").invoke(serverProduct);
+        String category = (String) serverClass.getMethod("getCategory").invoke(serverProduct);
+        double price = (double) serverClass.getMethod("getPrice").invoke(serverProduct);
+        String imagePath = (String) serverClass.getMethod("getImagePath").invoke(serverProduct);
+        int stockQuantity = (int) serverClass.getMethod("getStockQuantity").invoke(serverProduct);
+        boolean isAvailable = (boolean) serverClass.getMethod("isAvailable").invoke(serverProduct);
+        String description = (String) serverClass.getMethod("getDescription").invoke(serverProduct);
+        String[] productData = {
+            id, name, category, String.valueOf(price),
+            imagePath, String.valueOf(stockQuantity), String.valueOf(isAvailable)
+        };
+        return new Product(productData, description);
+    }
+}
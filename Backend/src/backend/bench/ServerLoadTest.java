@@ -0,0 +1,159 @@
+package backend.bench;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import backend.network.Message;
+import backend.network.MessageFrames;
+import backend.network.ServerMode;
+import backend.network.ShopServer;
+
+/**
+ * Connection-count load test for the server modes.
+ * Starts an in-process ShopServer, opens N idle framed connections, then
+ * measures heap/thread cost per connection and PING round trip percentiles.
+ * Heap figures include the test's own client sockets, and platform thread
+ * stacks live outside the heap, so compare the thread counts as well. The
+ * server runs on a scratch copy of Backend/data.
+ *
+ * Usage (run from the project root so Backend/data is found):
+ *   java -cp bin backend.bench.ServerLoadTest [threaded|virtual|nio] [connections] [pingsPerWorker]
+ */
+public class ServerLoadTest {
+    private static final String HOST = "127.0.0.1";
+    private static final int PORT = 8888;
+    private static final int PING_WORKERS = 8;
+
+    private static class Connection {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final byte version;
+
+        Connection(Socket socket, DataInputStream in, DataOutputStream out, byte version) {
+            this.socket = socket;
+            this.in = in;
+            this.out = out;
+            this.version = version;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ServerMode mode = ServerMode.fromString(args.length > 0 ? args[0] : "threaded");
+        int connections = Math.max(PING_WORKERS, args.length > 1 ? Integer.parseInt(args[1]) : 1000);
+        int pingsPerWorker = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+
+        ShopServer server = new ShopServer(mode, BenchData.scratchCopy());
+        Thread serverThread = new Thread(server::start, "LoadTest-Server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        Thread.sleep(1000);
+
+        long heapBefore = usedHeap();
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        List<Connection> clients = new ArrayList<>();
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            clients.add(open());
+        }
+        long connectMillis = (System.nanoTime() - connectStart) / 1_000_000;
+        // Let handlers reach their blocking read before measuring
+        Thread.sleep(1000);
+
+        long heapAfter = usedHeap();
+        int threadsAfter = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        long[] latencies = measurePings(clients, pingsPerWorker);
+
+        System.out.println();
+        System.out.println("===== Load test: " + mode + " =====");
+        System.out.println("Connections        : " + connections + " (opened in " + connectMillis + " ms)");
+        System.out.println("Platform threads   : " + threadsBefore + " -> " + threadsAfter);
+        System.out.println("Heap used          : " + (heapBefore / 1024) + " KB -> " + (heapAfter / 1024) + " KB ("
+                + ((heapAfter - heapBefore) / Math.max(1, connections)) + " bytes/connection)");
+        System.out.println("PING round trips   : " + latencies.length);
+        System.out.println("Latency p50 / p99  : " + micros(percentile(latencies, 50)) + " / "
+                + micros(percentile(latencies, 99)) + " us (max " + micros(latencies[latencies.length - 1]) + " us)");
+
+        for (Connection client : clients) {
+            client.socket.close();
+        }
+        server.stop();
+        System.exit(0);
+    }
+
+    private static Connection open() throws IOException {
+        Socket socket = new Socket(HOST, PORT);
+        socket.setTcpNoDelay(true);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        MessageFrames.writeFrame(out, MessageFrames.handshake(MessageFrames.MAX_VERSION));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        if (in.readInt() != MessageFrames.MAGIC) {
+            throw new IOException("Server did not accept the framed handshake");
+        }
+        return new Connection(socket, in, out, in.readByte());
+    }
+
+    // Workers ping disjoint slices of the connections concurrently
+    private static long[] measurePings(List<Connection> clients, int pingsPerWorker) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(PING_WORKERS);
+        List<Future<long[]>> results = new ArrayList<>();
+        Message ping = new Message("PING", null);
+
+        for (int w = 0; w < PING_WORKERS; w++) {
+            List<Connection> slice = clients.subList(w * clients.size() / PING_WORKERS, (w + 1) * clients.size() / PING_WORKERS);
+            results.add(workers.submit(() -> {
+                long[] samples = new long[pingsPerWorker];
+                for (int i = 0; i < pingsPerWorker; i++) {
+                    Connection client = slice.get(i % slice.size());
+                    long start = System.nanoTime();
+                    MessageFrames.writeFrame(client.out, MessageFrames.encode(ping, client.version));
+                    MessageFrames.readFrame(client.in, client.version);
+                    samples[i] = System.nanoTime() - start;
+                }
+                return samples;
+            }));
+        }
+
+        long[] all = new long[PING_WORKERS * pingsPerWorker];
+        int offset = 0;
+        for (Future<long[]> result : results) {
+            long[] samples = result.get();
+            System.arraycopy(samples, 0, all, offset, samples.length);
+            offset += samples.length;
+        }
+        workers.shutdown();
+        Arrays.sort(all);
+        return all;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+}
@@ -0,0 +1,107 @@
+package backend.bench;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import backend.models.Product;
+import backend.network.ServerMode;
+import backend.network.ShopServer;
+
+/**
+ * Checkout contention benchmark for ShopServer.reserveStock.
+ * Compares the lock-free reservation against the same call wrapped in one
+ * global lock (how checkouts used to be serialized), for two cart shapes:
+ *   disjoint - every worker buys its own products, so throughput should grow with cores
+ *   hot      - every worker buys the same products, as in a flash sale
+ * Stock is only changed in memory, and the server runs on a scratch copy of
+ * Backend/data, so the real data files are never touched.
+ *
+ * Usage (run from the project root so Backend/data is found):
+ *   java -cp bin backend.bench.StockContentionBench [maxThreads] [secondsPerRun]
+ */
+public class StockContentionBench {
+    private static final int ITEMS_PER_CART = 3;
+    private static final int BENCH_STOCK = 1_000_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+        ShopServer server = new ShopServer(ServerMode.THREADED, BenchData.scratchCopy());
+        List<Product> products = server.getInventory();
+        if (products.size() < maxThreads * ITEMS_PER_CART) {
+            throw new IllegalStateException("Not enough products for " + maxThreads + " disjoint carts");
+        }
+
+        System.out.println("Cores: " + Runtime.getRuntime().availableProcessors() + ", cart size: " + ITEMS_PER_CART);
+        for (boolean hot : new boolean[] { false, true }) {
+            for (boolean globalLock : new boolean[] { true, false }) {
+                System.out.println();
+                System.out.println("===== " + (hot ? "Hot" : "Disjoint") + " carts, "
+                        + (globalLock ? "global lock" : "lock-free") + " =====");
+                for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                    for (Product product : products) {
+                        product.setStockQuantity(BENCH_STOCK);
+                    }
+                    long orders = run(server, products, threads, seconds, hot, globalLock);
+                    System.out.println("Threads " + threads + " : " + (orders / seconds) + " orders/s");
+                }
+            }
+        }
+        System.exit(0);
+    }
+
+    private static long run(ShopServer server, List<Product> products, int threads, int seconds,
+                            boolean hot, boolean globalLock) throws Exception {
+        ReentrantLock lock = new ReentrantLock();
+        AtomicBoolean stop = new AtomicBoolean(false);
+        LongAdder completed = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(threads);
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int first = hot ? 0 : t * ITEMS_PER_CART;
+            Map<String, Integer> cart = new LinkedHashMap<>();
+            for (int i = 0; i < ITEMS_PER_CART; i++) {
+                cart.put(products.get(first + i).getId(), 1);
+            }
+            Thread worker = new Thread(() -> {
+                List<String> errors = new ArrayList<>();
+                ready.countDown();
+                while (!stop.get()) {
+                    List<Product> reserved;
+                    if (globalLock) {
+                        lock.lock();
+                        try {
+                            reserved = server.reserveStock(cart, errors);
+                        } finally {
+                            lock.unlock();
+                        }
+                    } else {
+                        reserved = server.reserveStock(cart, errors);
+                    }
+                    if (reserved == null) {
+                        throw new IllegalStateException("Reservation failed: " + errors);
+                    }
+                    completed.increment();
+                }
+            }, "Bench-Worker-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+
+        ready.await();
+        Thread.sleep(seconds * 1000L);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return completed.sum();
+    }
+}
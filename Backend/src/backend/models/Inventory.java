@@ -6,6 +6,19 @@ import java.util.*;
 public class Inventory implements Serializable{
 
 private static List<Product> products = new ArrayList<>();
+// Lookup indexes over products, keyed by lower-cased id / name / category.
+// Rebuilt together with the list and swapped in under the write lock.
+private static Map<String, Product> productsById = new HashMap<>();
+private static Map<String, Product> productsByName = new HashMap<>();
+private static Map<String, List<Product>> productsByCategory = new HashMap<>();
+// Fingerprint of products.txt as we last read or wrote it, so the server's file
+// watcher can tell an external edit from one of our own writes
+private static long knownFileSize = -1;
+private static long knownFileModified = -1;
+private static byte[] knownContentHash;
+// Rows of products.txt (id -> line) as we last read or wrote it; the base an external
+// edit is diffed against, so rows the editor did not touch keep their in-memory stock
+private static Map<String, String> knownRows = new HashMap<>();
 private static final java.util.concurrent.locks.ReentrantReadWriteLock lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
     private static String PRODUCTS_FILE = "./src/backend/data/products.txt";
     private static String descriptionFilePath = "./src/backend/data/products.txt";
@@ -20,45 +33,40 @@ private static final java.util.concurrent.locks.ReentrantReadWriteLock lock = ne
 
 
     public static List<Product> getProductsByCategory(String category) {
-        List<Product> temp = new ArrayList<>();
         if (category == null || category.trim().isEmpty()) {
-            return temp; // Return empty list
+            return new ArrayList<>(); // Return empty list
         }
-        for (Product p : products) {
-            if (p == null)
-                continue;
-            if (p.getCategory().equalsIgnoreCase(category))
-                temp.add(p);
+        lock.readLock().lock();
+        try {
+            List<Product> matches = productsByCategory.get(category.toLowerCase());
+            return matches != null ? new ArrayList<>(matches) : new ArrayList<>();
+        } finally {
+            lock.readLock().unlock();
         }
-        return temp;
     }
 
     public static Product getProductById(String id) {
         if (id == null || id.trim().isEmpty()) {
             return null; 
         }
-
-        for (Product p : products) {
-            if (p == null)
-                continue;
-            if (p.getId().equalsIgnoreCase(id))
-                return p;
+        lock.readLock().lock();
+        try {
+            return productsById.get(id.toLowerCase());
+        } finally {
+            lock.readLock().unlock();
         }
-        return null;
     }
 
     public static Product getProductByName(String name) {
         if (name == null || name.trim().isEmpty()) {
             return null; 
         }
-
-        for (Product p : products) {
-            if (p == null)
-                continue;
-            if (p.getName().equalsIgnoreCase(name))
-                return p;
+        lock.readLock().lock();
+        try {
+            return productsByName.get(name.toLowerCase());
+        } finally {
+            lock.readLock().unlock();
         }
-        return null;
     }
 
     public static void updateStock(String productId, int quantity) {
@@ -74,12 +82,18 @@ private static final java.util.concurrent.locks.ReentrantReadWriteLock lock = ne
         }
     }
 
+    // Builds a fresh list and indexes, then swaps them in together. Parsing stays
+    // under the write lock so a reload never reads a file saveToFile is rewriting.
     public static void loadFromFile() {
         lock.writeLock().lock();
         try {
-            products.clear();
+            List<Product> loaded = new ArrayList<>();
             Map<String, String> descriptions = loadDescriptions();
-            try (BufferedReader reader = new BufferedReader(new FileReader(PRODUCTS_FILE))) {
+            File file = new File(PRODUCTS_FILE);
+            try {
+                byte[] content = java.nio.file.Files.readAllBytes(file.toPath());
+                rememberFile(file, content);
+                BufferedReader reader = new BufferedReader(new StringReader(new String(content)));
                 String line;
                 while ((line = reader.readLine()) != null) {
                     String[] tokens = line.split("\\|");
@@ -89,18 +103,132 @@ private static final java.util.concurrent.locks.ReentrantReadWriteLock lock = ne
                             description = "No description available";
                         }
                         Product temp = new Product(tokens, description);
-                        products.add(temp);
+                        loaded.add(temp);
                     }
                 }
             } catch (IOException e) {
                 System.err.println("Error loading products: " + e.getMessage());
                 e.printStackTrace();
             }
+
+            installProducts(loaded);
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    /**
+     * Applies an external edit of products.txt incrementally. The file is diffed row by
+     * row against the content we last read or wrote (not against memory, which may be
+     * ahead through the stock log), and only rows that differ are applied: a stock-only
+     * change updates the existing Product, other changes replace it, and added or
+     * deleted rows are added or removed. Unchanged products keep their instances.
+     * @return ids of added, changed and removed products (empty if nothing differs)
+     */
+    public static List<String> applyFileChanges() {
+        lock.writeLock().lock();
+        try {
+            File file = new File(PRODUCTS_FILE);
+            byte[] content;
+            try {
+                content = java.nio.file.Files.readAllBytes(file.toPath());
+            } catch (IOException e) {
+                System.err.println("Error loading products: " + e.getMessage());
+                return new ArrayList<>();
+            }
+            Map<String, String> base = knownRows;
+            Map<String, String> rows = parseRows(content);
+
+            List<String> touched = new ArrayList<>();
+            Map<String, Product> replacements = new HashMap<>();
+            List<Product> added = new ArrayList<>();
+            Map<String, String> descriptions = null;
+            for (Map.Entry<String, String> row : rows.entrySet()) {
+                String id = row.getKey();
+                if (row.getValue().equals(base.get(id))) {
+                    continue;
+                }
+                touched.add(id);
+                if (descriptions == null) {
+                    descriptions = loadDescriptions();
+                }
+                String description = descriptions.getOrDefault(id, "No description available");
+                Product parsed = new Product(row.getValue().split("\\|"), description);
+                Product existing = productsById.get(id.toLowerCase());
+                if (existing == null) {
+                    added.add(parsed);
+                } else if (sameListing(existing, parsed)) {
+                    existing.setStockQuantity(parsed.getStockQuantity());
+                    existing.setAvailable(parsed.isAvailable());
+                } else {
+                    replacements.put(existing.getId(), parsed);
+                }
+            }
+            Set<String> removed = new HashSet<>(base.keySet());
+            removed.removeAll(rows.keySet());
+            touched.addAll(removed);
+
+            if (!replacements.isEmpty() || !added.isEmpty() || !removed.isEmpty()) {
+                List<Product> updated = new ArrayList<>(products.size() + added.size());
+                for (Product product : products) {
+                    if (removed.contains(product.getId())) {
+                        continue;
+                    }
+                    Product replacement = replacements.get(product.getId());
+                    updated.add(replacement != null ? replacement : product);
+                }
+                updated.addAll(added);
+                installProducts(updated);
+            }
+            rememberFile(file, content);
+            return touched;
+        } catch (RuntimeException e) {
+            System.err.println("Error applying products file changes: " + e.getMessage());
+            return new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Everything but stock and availability
+    private static boolean sameListing(Product a, Product b) {
+        return Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getCategory(), b.getCategory())
+                && a.getPrice() == b.getPrice()
+                && Objects.equals(a.getImagePath(), b.getImagePath())
+                && Objects.equals(a.getDescription(), b.getDescription());
+    }
+
+    // Builds fresh indexes for the list and swaps list and indexes in together (write lock held)
+    private static void installProducts(List<Product> loaded) {
+        Map<String, Product> byId = new HashMap<>();
+        Map<String, Product> byName = new HashMap<>();
+        Map<String, List<Product>> byCategory = new HashMap<>();
+        for (Product p : loaded) {
+            // First match wins, like the old linear scans
+            byId.putIfAbsent(p.getId().toLowerCase(), p);
+            byName.putIfAbsent(p.getName().toLowerCase(), p);
+            byCategory.computeIfAbsent(p.getCategory().toLowerCase(), k -> new ArrayList<>()).add(p);
+        }
+
+        products = loaded;
+        productsById = byId;
+        productsByName = byName;
+        productsByCategory = byCategory;
+    }
+
+    // Same row filter as loadFromFile; first row wins for a duplicated id
+    private static Map<String, String> parseRows(byte[] content) {
+        Map<String, String> rows = new LinkedHashMap<>();
+        for (String line : new String(content).split("\\R")) {
+            String[] tokens = line.split("\\|");
+            if (tokens.length >= 7) {
+                rows.putIfAbsent(tokens[0], line);
+            }
+        }
+        return rows;
+    }
+
     private static Map<String, String> loadDescriptions() {
         Map<String, String> descriptions = new HashMap<>();
         try (BufferedReader reader = new BufferedReader(new FileReader(descriptionFilePath))) {
@@ -145,34 +273,150 @@ private static final java.util.concurrent.locks.ReentrantReadWriteLock lock = ne
     public static void saveToFile() {
         lock.writeLock().lock();
         try {
-            try (PrintWriter writer = new PrintWriter(new FileWriter(PRODUCTS_FILE))) {
-                for (Product product : products) {
-                    if (product != null) {
-                        writer.println(
-                            product.getId() + "|" +
-                            product.getName() + "|" +
-                            product.getCategory() + "|" +
-                            product.getPrice() + "|" +
-                            product.getImagePath() + "|" +
-                            product.getStockQuantity() + "|" +
-                            product.isAvailable()
-                        );
-                    }
-                }
+            File file = new File(PRODUCTS_FILE);
+            byte[] content = renderProducts(Collections.emptyMap());
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(content);
                 System.out.println("  Products file updated successfully with " + products.size() + " products");
             } catch (IOException e) {
                 System.err.println("Error saving products to file: " + e.getMessage());
                 e.printStackTrace();
+                return;
+            }
+            rememberFile(file, content);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Crash-safe variant of saveToFile used when compacting the stock log: writes a
+     * temp file, syncs it, then renames it over products.txt, so a crash leaves
+     * either the old or the new file.
+     * @param loggedStock stock to write instead of the live value, by product id
+     */
+    public static void saveSnapshot(Map<String, Integer> loggedStock) throws IOException {
+        lock.writeLock().lock();
+        try {
+            File target = new File(PRODUCTS_FILE);
+            File temp = new File(PRODUCTS_FILE + ".tmp");
+            byte[] content = renderProducts(loggedStock);
+            try (FileOutputStream fos = new FileOutputStream(temp)) {
+                fos.write(content);
+                fos.getFD().sync();
             }
+            java.nio.file.Files.move(temp.toPath(), target.toPath(),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                    java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+            rememberFile(target, content);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * True if products.txt no longer matches what we last read or wrote. Size and
+     * mtime are checked first; the content is only hashed when they differ, so a
+     * touched-but-identical file (or our own write) does not count as a change.
+     */
+    public static boolean hasExternalChanges() {
+        lock.writeLock().lock();
+        try {
+            File file = new File(PRODUCTS_FILE);
+            if (!file.exists()) {
+                return false;
+            }
+            if (file.length() == knownFileSize && file.lastModified() == knownFileModified) {
+                return false;
+            }
+            byte[] content = java.nio.file.Files.readAllBytes(file.toPath());
+            if (knownContentHash != null && Arrays.equals(hash(content), knownContentHash)) {
+                rememberFile(file, content);
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error checking products file: " + e.getMessage());
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Adds a product to the in-memory inventory and its indexes
+    public static void addProduct(Product product) {
+        lock.writeLock().lock();
+        try {
+            List<Product> updated = new ArrayList<>(products);
+            updated.add(product);
+            products = updated;
+            Map<String, List<Product>> byCategory = new HashMap<>(productsByCategory);
+            List<Product> inCategory = new ArrayList<>(byCategory.getOrDefault(product.getCategory().toLowerCase(), Collections.emptyList()));
+            inCategory.add(product);
+            byCategory.put(product.getCategory().toLowerCase(), inCategory);
+            Map<String, Product> byId = new HashMap<>(productsById);
+            byId.putIfAbsent(product.getId().toLowerCase(), product);
+            Map<String, Product> byName = new HashMap<>(productsByName);
+            byName.putIfAbsent(product.getName().toLowerCase(), product);
+            productsById = byId;
+            productsByName = byName;
+            productsByCategory = byCategory;
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    // stockOverride replaces the live stock (and availability) of the products it lists
+    private static byte[] renderProducts(Map<String, Integer> stockOverride) {
+        StringBuilder sb = new StringBuilder();
+        for (Product product : products) {
+            if (product != null) {
+                int live = product.getStockQuantity();
+                Integer override = stockOverride.get(product.getId());
+                int stock = override != null ? override : live;
+                boolean available = stock == live ? product.isAvailable() : stock > 0;
+                sb.append(product.getId()).append("|")
+                  .append(product.getName()).append("|")
+                  .append(product.getCategory()).append("|")
+                  .append(product.getPrice()).append("|")
+                  .append(product.getImagePath()).append("|")
+                  .append(stock).append("|")
+                  .append(available)
+                  .append(System.lineSeparator());
+            }
+        }
+        return sb.toString().getBytes();
+    }
+
+    private static void rememberFile(File file, byte[] content) {
+        knownRows = parseRows(content);
+        knownFileSize = file.length();
+        knownFileModified = file.lastModified();
+        knownContentHash = hash(content);
+    }
+
+    private static byte[] hash(byte[] content) {
+        try {
+            return java.security.MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The list is replaced rather than modified once installed, so callers get it without a copy
     public static List<Product> getAllProducts() {
         lock.readLock().lock();
         try {
-            return new ArrayList<>(products);
+            return Collections.unmodifiableList(products);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static int getProductCount() {
+        lock.readLock().lock();
+        try {
+            return products.size();
         } finally {
             lock.readLock().unlock();
         }
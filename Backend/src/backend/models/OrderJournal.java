@@ -0,0 +1,154 @@
+package backend.models;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Group-commit journal for completed orders, in front of the OrderStore.
+ *
+ * Handlers hand over the finished order and get a future back; one writer
+ * thread drains whatever has queued up, appends it to the store in a single
+ * write, forces it to disk once and then completes every future in the batch
+ * with the order's id. Under a checkout burst
+ * many orders therefore share one fsync. The queue is bounded, so producers wait
+ * rather than let a slow disk pile up memory.
+ *
+ * Configuration (system properties):
+ *   ezshop.orders.queue     queue capacity (default 1024)
+ *   ezshop.orders.maxBatch  orders per write + force (default 256)
+ */
+public class OrderJournal {
+    private static class Entry {
+        final OrderRecord order;
+        final CompletableFuture<Long> done = new CompletableFuture<>();
+
+        Entry(OrderRecord order) {
+            this.order = order;
+        }
+    }
+
+    // Queued by close() so the writer exits after draining everything before it
+    private static final Entry SHUTDOWN = new Entry(null);
+
+    private final OrderStore store;
+    private final BlockingQueue<Entry> queue;
+    private final int maxBatch;
+    private Thread writer;
+    private volatile boolean open = false;
+
+    public OrderJournal(OrderStore store, int capacity, int maxBatch) {
+        this.store = store;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.maxBatch = Math.max(1, maxBatch);
+    }
+
+    public static OrderJournal fromSystemProperties(OrderStore store) {
+        return new OrderJournal(store,
+                Integer.getInteger("ezshop.orders.queue", 1024),
+                Integer.getInteger("ezshop.orders.maxBatch", 256));
+    }
+
+    public void start() {
+        open = true;
+        writer = new Thread(this::writeLoop, "OrderJournal-Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues an order; waits if the queue is full.
+     * @return a future completed with the order id once it is on disk (exceptionally if the write failed)
+     */
+    public CompletableFuture<Long> append(OrderRecord order) {
+        Entry entry = new Entry(order);
+        if (!open) {
+            entry.done.completeExceptionally(new IOException("Order journal is closed"));
+            return entry.done;
+        }
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            entry.done.completeExceptionally(e);
+        }
+        return entry.done;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    // Flushes everything queued so far, then stops the writer (the store stays open)
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            queue.put(SHUTDOWN);
+            writer.join(5000);
+            // Anything that slipped in behind the shutdown marker will not be written
+            List<Entry> leftovers = new ArrayList<>();
+            queue.drainTo(leftovers);
+            for (Entry entry : leftovers) {
+                entry.done.completeExceptionally(new IOException("Order journal is closed"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+
+            boolean shutdown = batch.remove(SHUTDOWN);
+            if (!batch.isEmpty()) {
+                commit(batch);
+            }
+            batch.clear();
+            if (shutdown) {
+                return;
+            }
+        }
+    }
+
+    private void commit(List<Entry> batch) {
+        List<OrderRecord> orders = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            orders.add(entry.order);
+        }
+
+        Map<OrderRecord, IOException> rejected;
+        try {
+            rejected = store.appendOrders(orders);
+        } catch (IOException e) {
+            System.err.println("Error writing order journal: " + e.getMessage());
+            for (Entry entry : batch) {
+                entry.done.completeExceptionally(e);
+            }
+            return;
+        }
+        // An order the store could not encode fails alone; the rest of the batch is on disk
+        for (Entry entry : batch) {
+            IOException error = rejected.get(entry.order);
+            if (error != null) {
+                System.err.println("Order was not journaled: " + error.getMessage());
+                entry.done.completeExceptionally(error);
+            } else {
+                entry.done.complete(entry.order.getId());
+            }
+        }
+    }
+}
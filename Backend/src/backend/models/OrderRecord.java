@@ -0,0 +1,109 @@
+package backend.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One completed order as kept in the OrderStore. toText() renders the block
+ * format orders.txt has always used, so exports stay readable by existing tools.
+ */
+public class OrderRecord {
+    public static class Line {
+        private final String productId;
+        private final String productName;
+        private final int quantity;
+        private final double unitPrice;
+        private final double subtotal;
+
+        public Line(String productId, String productName, int quantity, double unitPrice, double subtotal) {
+            this.productId = productId;
+            this.productName = productName;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+            this.subtotal = subtotal;
+        }
+
+        public String getProductId() { return productId; }
+        public String getProductName() { return productName; }
+        public int getQuantity() { return quantity; }
+        public double getUnitPrice() { return unitPrice; }
+        public double getSubtotal() { return subtotal; }
+    }
+
+    private long id;
+    private final long createdAt;
+    private final String orderTime;
+    private final String customer;
+    private final String address;
+    private final String contact;
+    private final String postCode;
+    private final String username;
+    private final List<Line> lines;
+    private final double total;
+
+    public OrderRecord(long id, long createdAt, String orderTime, String customer, String address, String contact,
+                       String postCode, String username, List<Line> lines, double total) {
+        this.id = id;
+        this.createdAt = createdAt;
+        this.orderTime = orderTime;
+        this.customer = customer;
+        this.address = address;
+        this.contact = contact;
+        this.postCode = postCode;
+        this.username = username != null ? username : "";
+        this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+        this.total = total;
+    }
+
+    public long getId() { return id; }
+    public long getCreatedAt() { return createdAt; }
+    public String getOrderTime() { return orderTime; }
+    public String getCustomer() { return customer; }
+    public String getAddress() { return address; }
+    public String getContact() { return contact; }
+    public String getPostCode() { return postCode; }
+    public String getUsername() { return username; }
+    public List<Line> getLines() { return lines; }
+    public double getTotal() { return total; }
+
+    // Assigned by the store when the order is first written
+    void setId(long id) {
+        this.id = id;
+    }
+
+    // The orders.txt block for this order
+    public String toText() {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("Order Time: ").append(orderTime).append("\n");
+        sb.append("Customer  : ").append(customer).append("\n");
+        sb.append("Address   : ").append(address).append("\n");
+        sb.append("Contact   : ").append(contact).append("\n");
+        sb.append("Post Code : ").append(postCode).append("\n");
+
+        if (!username.isEmpty()) {
+            sb.append("Username  : ").append(username).append("\n");
+        }
+
+        sb.append("Items     :\n");
+        for (Line line : lines) {
+            sb.append("- Product: ").append(line.getProductName())
+                    .append(", Quantity: ").append(line.getQuantity())
+                    .append(", Unit Price: $").append(money(line.getUnitPrice()))
+                    .append(", Subtotal: $").append(money(line.getSubtotal())).append("\n");
+        }
+        sb.append("Total: $").append(money(total)).append("\n");
+        sb.append("----------------------------------------\n\n");
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return orderTime + " - " + customer;
+    }
+
+    // Same output as String.format("%.2f", value) without a Formatter per call
+    public static String money(double value) {
+        return java.math.BigDecimal.valueOf(value).setScale(2, java.math.RoundingMode.HALF_UP).toPlainString();
+    }
+}
@@ -0,0 +1,730 @@
+package backend.models;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Structured order store (orders.dat) replacing the free-form orders.txt.
+ *
+ * Layout: a 16 byte header (magic, format version, creation time) followed by
+ * records of the form int length, int crc32, payload. A payload is either an
+ * ORDER (the full order) or a STATUS tombstone moving an order from PENDING to
+ * PROCEEDED or REMOVED, so processing an order appends a few bytes instead of
+ * rewriting the file. Order strings are an int byte length and UTF-8 bytes (format
+ * 2); orders written by format 1 used writeUTF and are still read. Opening scans
+ * the file once to build an order id -> offset index and the current status of
+ * every order; get() then reads one record, and tail() reads just the records
+ * appended since a previous call.
+ *
+ * The server appends orders (through OrderJournal) and the admin panel appends
+ * status changes, possibly from another process. Writers take an exclusive file
+ * lock, catch up on what others appended, then write at the end of the file;
+ * refresh() picks up records other writers added since the last scan.
+ * exportText() renders the old orders.txt / proceeded.txt / removed.txt formats.
+ */
+public class OrderStore {
+    public enum Status { PENDING, PROCEEDED, REMOVED }
+
+    private static final int MAGIC = 0x455A4F53; // "EZOS"
+    // Version 2 added KIND_ORDER_UTF8; a version 1 file is marked 2 when one is first appended
+    private static final short FORMAT_VERSION = 2;
+    private static final int HEADER_LENGTH = 16;
+    private static final int RECORD_HEADER = 8;
+    // Strings written with writeUTF (64 KB each at most); still read, no longer written
+    private static final byte KIND_ORDER = 1;
+    private static final byte KIND_STATUS = 2;
+    // Strings written as an int byte length and UTF-8 bytes
+    private static final byte KIND_ORDER_UTF8 = 3;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern LEGACY_LINE = Pattern.compile(
+            "- Product: (.*), Quantity: (\\d+), Unit Price: \\$([\\d.]+), Subtotal: \\$([\\d.]+)");
+
+    /**
+     * What changed in the store since an earlier tail. Pass the previous Tail back
+     * to tail() to continue from where it stopped; reset means the file was
+     * replaced or shrank, and added then holds every pending order from scratch.
+     */
+    public static class Tail {
+        private final long created;
+        private final long position;
+        private final boolean reset;
+        private final List<OrderRecord> added;
+        private final Map<Long, Status> statusChanges;
+
+        private Tail(long created, long position, boolean reset, List<OrderRecord> added, Map<Long, Status> statusChanges) {
+            this.created = created;
+            this.position = position;
+            this.reset = reset;
+            this.added = added;
+            this.statusChanges = statusChanges;
+        }
+
+        public boolean isReset() { return reset; }
+        public List<OrderRecord> getAdded() { return added; }
+        public Map<Long, Status> getStatusChanges() { return statusChanges; }
+        public boolean isEmpty() { return !reset && added.isEmpty() && statusChanges.isEmpty(); }
+    }
+
+    private final File file;
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel channel;
+    private Object fileKey;
+    private long created;
+    private short fileVersion;
+    // Offset of every ORDER record, in file order
+    private final Map<Long, Long> offsets = new LinkedHashMap<>();
+    private final Map<Long, Status> statuses = new HashMap<>();
+    private final Map<Long, Long> statusTimes = new HashMap<>();
+    private long scannedTo = HEADER_LENGTH;
+    private long nextId = 1;
+
+    private OrderStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens (creating if needed) the store. A new store imports orders.txt from the
+     * same directory as pending orders, if there is one. An incomplete record left
+     * at the end by a crash is dropped by the next write.
+     */
+    public static OrderStore open(String path) throws IOException {
+        OrderStore store = new OrderStore(new File(path));
+        store.openFile();
+        return store;
+    }
+
+    private void openFile() throws IOException {
+        lock.lock();
+        try {
+            boolean isNew = !file.exists() || file.length() < HEADER_LENGTH;
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (isNew) {
+                channel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+                created = System.currentTimeMillis();
+                header.putInt(MAGIC).putShort(FORMAT_VERSION).putShort((short) 0).putLong(created);
+                fileVersion = FORMAT_VERSION;
+                header.flip();
+                writeFully(header, 0);
+                channel.force(false);
+
+                File legacy = new File(file.getParentFile(), "orders.txt");
+                if (legacy.exists()) {
+                    List<OrderRecord> imported = importLegacyText(legacy);
+                    int skipped = appendOrders(imported).size();
+                    System.out.println("Imported " + (imported.size() - skipped) + " orders from " + legacy.getName()
+                            + (skipped > 0 ? " (" + skipped + " could not be encoded)" : ""));
+                }
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+                channel.read(header, 0);
+                header.flip();
+                if (header.getInt() != MAGIC) {
+                    throw new IOException(file + " is not an order store");
+                }
+                short version = header.getShort();
+                if (version > FORMAT_VERSION) {
+                    throw new IOException("Unsupported order store version " + version);
+                }
+                fileVersion = version;
+                header.getShort();
+                created = header.getLong();
+            }
+            fileKey = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+            scan();
+            if (scannedTo < channel.size() && !isTornTail()) {
+                System.err.println("Order store " + file + " has a corrupt record at offset " + scannedTo
+                        + "; orders after it are not loaded and new orders will be refused");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes orders in one append and forces them to disk. Each order is given the
+     * next id. Used by OrderJournal's writer thread for a whole group commit.
+     * Orders are encoded one by one, so one that cannot be encoded is left out
+     * without failing the others.
+     * @return the orders that were not written, with the reason (empty if all were)
+     * @throws IOException if the append itself failed; then none were written
+     */
+    public Map<OrderRecord, IOException> appendOrders(List<OrderRecord> orders) throws IOException {
+        Map<OrderRecord, IOException> rejected = new IdentityHashMap<>();
+        if (orders.isEmpty()) {
+            return rejected;
+        }
+        lock.lock();
+        FileLock fileLock = null;
+        try {
+            fileLock = channel.lock();
+            long start = catchUp();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * orders.size());
+            List<OrderRecord> written = new ArrayList<>(orders.size());
+            List<Long> relative = new ArrayList<>(orders.size());
+            long id = nextId;
+            for (OrderRecord order : orders) {
+                byte[] payload;
+                try {
+                    payload = encodeOrder(order, id);
+                } catch (IOException e) {
+                    rejected.put(order, e);
+                    continue;
+                } catch (RuntimeException e) {
+                    rejected.put(order, new IOException("Cannot encode order: " + e, e));
+                    continue;
+                }
+                order.setId(id++);
+                relative.add((long) bytes.size());
+                writeRecord(bytes, payload);
+                written.add(order);
+            }
+            if (written.isEmpty()) {
+                return rejected;
+            }
+            if (fileVersion < FORMAT_VERSION) {
+                ByteBuffer version = ByteBuffer.allocate(2).putShort(0, FORMAT_VERSION);
+                writeFully(version, 4);
+                fileVersion = FORMAT_VERSION;
+            }
+            writeFully(ByteBuffer.wrap(bytes.toByteArray()), start);
+            channel.force(false);
+
+            nextId = id;
+            for (int i = 0; i < written.size(); i++) {
+                long orderId = written.get(i).getId();
+                offsets.put(orderId, start + relative.get(i));
+                statuses.put(orderId, Status.PENDING);
+            }
+            scannedTo = start + bytes.size();
+            return rejected;
+        } finally {
+            release(fileLock);
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves a pending order to PROCEEDED or REMOVED by appending a tombstone.
+     * @return false if the order is unknown or no longer pending
+     */
+    public boolean updateStatus(long orderId, Status status) throws IOException {
+        if (status == Status.PENDING) {
+            throw new IllegalArgumentException("Orders cannot return to PENDING");
+        }
+        lock.lock();
+        FileLock fileLock = null;
+        try {
+            fileLock = channel.lock();
+            long start = catchUp();
+            if (statuses.get(orderId) != Status.PENDING) {
+                return false;
+            }
+            long at = System.currentTimeMillis();
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(24);
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeByte(KIND_STATUS);
+            out.writeLong(orderId);
+            out.writeByte(status.ordinal());
+            out.writeLong(at);
+            ByteArrayOutputStream record = new ByteArrayOutputStream(32);
+            writeRecord(record, payload.toByteArray());
+            writeFully(ByteBuffer.wrap(record.toByteArray()), start);
+            channel.force(false);
+            statuses.put(orderId, status);
+            statusTimes.put(orderId, at);
+            scannedTo = start + record.size();
+            return true;
+        } finally {
+            release(fileLock);
+            lock.unlock();
+        }
+    }
+
+    // O(1) lookup through the offset index
+    public OrderRecord get(long orderId) throws IOException {
+        lock.lock();
+        try {
+            Long offset = offsets.get(orderId);
+            return offset != null ? readOrder(offset) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Status getStatus(long orderId) {
+        lock.lock();
+        try {
+            return statuses.get(orderId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Orders currently in the given status, oldest first
+    public List<OrderRecord> list(Status status) throws IOException {
+        lock.lock();
+        try {
+            List<OrderRecord> result = new ArrayList<>();
+            for (Map.Entry<Long, Long> entry : offsets.entrySet()) {
+                if (statuses.get(entry.getKey()) == status) {
+                    result.add(readOrder(entry.getValue()));
+                }
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return offsets.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Indexes records appended by other writers since the last scan; returns how many were read
+    public int refresh() throws IOException {
+        lock.lock();
+        try {
+            reopenIfReplaced();
+            return scan();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads only the records appended since previous (null for a first, full read).
+     * The cost is proportional to what was appended, not to the size of the store.
+     */
+    public Tail tail(Tail previous) throws IOException {
+        lock.lock();
+        try {
+            reopenIfReplaced();
+            scan();
+            if (previous == null || previous.created != created || previous.position > scannedTo) {
+                return new Tail(created, scannedTo, true, list(Status.PENDING), new LinkedHashMap<>());
+            }
+
+            List<OrderRecord> added = new ArrayList<>();
+            Map<Long, Status> statusChanges = new LinkedHashMap<>();
+            if (previous.position < scannedTo) {
+                ByteBuffer data = readRange(previous.position, scannedTo);
+                while (data.hasRemaining()) {
+                    int length = data.getInt();
+                    data.getInt(); // crc, already checked by scan()
+                    byte[] payload = new byte[length];
+                    data.get(payload);
+                    if (payload[0] == KIND_ORDER || payload[0] == KIND_ORDER_UTF8) {
+                        added.add(decodeOrder(payload));
+                    } else if (payload[0] == KIND_STATUS) {
+                        ByteBuffer record = ByteBuffer.wrap(payload, 1, payload.length - 1);
+                        long id = record.getLong();
+                        statusChanges.put(id, Status.values()[record.get()]);
+                    }
+                }
+            }
+            return new Tail(created, scannedTo, false, added, statusChanges);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The orders in one status rendered in the matching legacy text format
+    public String exportText(Status status) throws IOException {
+        lock.lock();
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (OrderRecord order : list(status)) {
+                sb.append(transitionText(order, status, statusTimes.getOrDefault(order.getId(), order.getCreatedAt())));
+            }
+            return sb.toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Writes exportText(status) to a file via a temp file and rename
+    public void exportText(Status status, File target) throws IOException {
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(exportText(status).getBytes());
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The text block used for an order in each legacy file: orders.txt for pending
+     * orders, proceeded.txt / removed.txt (with their banner) for processed ones.
+     */
+    public static String transitionText(OrderRecord order, Status status, long at) {
+        if (status == Status.PENDING) {
+            return order.toText();
+        }
+        String time = LocalDateTime.ofInstant(java.time.Instant.ofEpochMilli(at), ZoneId.systemDefault()).format(TIME_FORMAT);
+        if (status == Status.PROCEEDED) {
+            return "=== ORDER PROCEEDED ===\nProcessed Time: " + time + "\n" + order.toText() + "========================\n\n";
+        }
+        return "=== ORDER REMOVED ===\nRemoved Time: " + time + "\n" + order.toText() + "=====================\n\n";
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            if (channel != null && channel.isOpen()) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing order store: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void release(FileLock fileLock) throws IOException {
+        if (fileLock != null && fileLock.isValid()) {
+            fileLock.release();
+        }
+    }
+
+    /**
+     * Called with the file lock held, so no other process is mid-append: indexes
+     * what they wrote, drops a tail left by a writer that died, and returns the
+     * offset the next record goes to. A bad record with valid data after it is
+     * corruption, not a torn write; appending would orphan everything after it,
+     * so this fails instead of truncating.
+     */
+    private long catchUp() throws IOException {
+        scan();
+        long size = channel.size();
+        if (scannedTo < size) {
+            if (!isTornTail()) {
+                throw new IOException("Corrupt order record at offset " + scannedTo + " of " + file + " with "
+                        + (size - scannedTo) + " bytes after it; not appending until the file is repaired");
+            }
+            System.out.println("Dropping " + (size - scannedTo) + " bytes of incomplete order record");
+            channel.truncate(scannedTo);
+        }
+        return scannedTo;
+    }
+
+    // True if the bytes after the last good record can only be one write cut short: a
+    // partial header, zeros up to the end, or a record reaching the end of the file
+    // (cut short or with a failing checksum) with no valid record anywhere after its
+    // start. A length field corrupted to a large value in the middle of the file also
+    // reaches the end, but the good records behind it give it away.
+    private boolean isTornTail() throws IOException {
+        long remaining = channel.size() - scannedTo;
+        if (remaining < RECORD_HEADER) {
+            return true;
+        }
+        ByteBuffer rest = readRange(scannedTo, channel.size());
+        boolean zeros = true;
+        for (int i = 0; i < rest.limit() && zeros; i++) {
+            zeros = rest.get(i) == 0;
+        }
+        if (zeros) {
+            return true;
+        }
+        int length = rest.getInt(0);
+        return length > 0 && length >= remaining - RECORD_HEADER && !containsRecord(rest, 1);
+    }
+
+    // True if a record with a known kind and a matching checksum starts at or after from
+    private static boolean containsRecord(ByteBuffer data, int from) {
+        CRC32 crc = new CRC32();
+        for (int start = from; start + RECORD_HEADER < data.limit(); start++) {
+            int length = data.getInt(start);
+            int payload = start + RECORD_HEADER;
+            if (length <= 0 || length > data.limit() - payload) {
+                continue;
+            }
+            byte kind = data.get(payload);
+            if (kind != KIND_ORDER && kind != KIND_STATUS && kind != KIND_ORDER_UTF8) {
+                continue;
+            }
+            crc.reset();
+            ByteBuffer bytes = data.duplicate();
+            bytes.position(payload).limit(payload + length);
+            crc.update(bytes);
+            if ((int) crc.getValue() == data.getInt(start + 4)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A file that was rotated (replaced) or shrank underneath us is indexed again from scratch
+    private void reopenIfReplaced() throws IOException {
+        Object currentKey;
+        try {
+            currentKey = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return; // moved away and not recreated yet: keep serving what we have
+        }
+        boolean replaced = currentKey != null && !currentKey.equals(fileKey);
+        if (!replaced && channel.size() >= scannedTo) {
+            return;
+        }
+        System.out.println("Order store " + file.getName() + " was " + (replaced ? "replaced" : "truncated") + ", reloading");
+        channel.close();
+        offsets.clear();
+        statuses.clear();
+        statusTimes.clear();
+        scannedTo = HEADER_LENGTH;
+        nextId = 1;
+        openFile();
+    }
+
+    // Reads complete records from scannedTo onwards; an incomplete tail is left for a later scan
+    private int scan() throws IOException {
+        long size = channel.size();
+        if (size <= scannedTo) {
+            return 0;
+        }
+        ByteBuffer data = readRange(scannedTo, size);
+
+        int records = 0;
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= RECORD_HEADER) {
+            int start = data.position();
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length <= 0 || length > data.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            data.get(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            applyRecord(scannedTo + start, payload);
+            records++;
+            scannedTo += data.position() - start;
+            data = data.slice();
+        }
+        return records;
+    }
+
+    private ByteBuffer readRange(long from, long to) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate((int) (to - from));
+        long position = from;
+        while (data.hasRemaining()) {
+            int read = channel.read(data, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        data.flip();
+        return data;
+    }
+
+    private void applyRecord(long offset, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(payload));
+        byte kind = in.readByte();
+        long id = in.readLong();
+        if (kind == KIND_ORDER || kind == KIND_ORDER_UTF8) {
+            offsets.put(id, offset);
+            statuses.putIfAbsent(id, Status.PENDING);
+            nextId = Math.max(nextId, id + 1);
+        } else if (kind == KIND_STATUS) {
+            statuses.put(id, Status.values()[in.readByte()]);
+            statusTimes.put(id, in.readLong());
+        }
+    }
+
+    private OrderRecord readOrder(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        channel.read(header, offset);
+        header.flip();
+        int length = header.getInt();
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        long position = offset + RECORD_HEADER;
+        while (payload.hasRemaining()) {
+            int read = channel.read(payload, position);
+            if (read < 0) {
+                throw new IOException("Order record at " + offset + " is truncated");
+            }
+            position += read;
+        }
+        return decodeOrder(payload.array());
+    }
+
+    private static OrderRecord decodeOrder(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(payload));
+        boolean utf8 = in.readByte() == KIND_ORDER_UTF8;
+        long id = in.readLong();
+        long createdAt = in.readLong();
+        String orderTime = readString(in, utf8);
+        String customer = readString(in, utf8);
+        String address = readString(in, utf8);
+        String contact = readString(in, utf8);
+        String postCode = readString(in, utf8);
+        String username = readString(in, utf8);
+        int count = in.readInt();
+        if (count < 0 || count > payload.length) {
+            throw new IOException("Invalid order line count " + count);
+        }
+        List<OrderRecord.Line> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(new OrderRecord.Line(readString(in, utf8), readString(in, utf8), in.readInt(),
+                    in.readDouble(), in.readDouble()));
+        }
+        double total = in.readDouble();
+        return new OrderRecord(id, createdAt, orderTime, customer, address, contact, postCode, username, lines, total);
+    }
+
+    private static byte[] encodeOrder(OrderRecord order, long id) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(KIND_ORDER_UTF8);
+        out.writeLong(id);
+        out.writeLong(order.getCreatedAt());
+        writeString(out, order.getOrderTime());
+        writeString(out, order.getCustomer());
+        writeString(out, order.getAddress());
+        writeString(out, order.getContact());
+        writeString(out, order.getPostCode());
+        writeString(out, order.getUsername());
+        out.writeInt(order.getLines().size());
+        for (OrderRecord.Line line : order.getLines()) {
+            writeString(out, line.getProductId());
+            writeString(out, line.getProductName());
+            out.writeInt(line.getQuantity());
+            out.writeDouble(line.getUnitPrice());
+            out.writeDouble(line.getSubtotal());
+        }
+        out.writeDouble(order.getTotal());
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecord(ByteArrayOutputStream target, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        DataOutputStream out = new DataOutputStream(target);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, boolean utf8) throws IOException {
+        if (!utf8) {
+            return in.readUTF();
+        }
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Parses the old orders.txt blocks (same rules the admin panel used)
+    static List<OrderRecord> importLegacyText(File legacy) throws IOException {
+        List<OrderRecord> orders = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(legacy))) {
+            String line;
+            String orderTime = null;
+            Map<String, String> fields = new HashMap<>();
+            List<OrderRecord.Line> lines = new ArrayList<>();
+            double total = 0.0;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("Order Time:")) {
+                    if (orderTime != null) {
+                        orders.add(legacyOrder(orderTime, fields, lines, total));
+                    }
+                    orderTime = line.substring(11).trim();
+                    fields = new HashMap<>();
+                    lines = new ArrayList<>();
+                    total = 0.0;
+                } else if (orderTime == null) {
+                    continue;
+                } else if (line.startsWith("Total: $")) {
+                    total = parseDouble(line.substring(8).trim());
+                } else if (line.startsWith("- Product: ")) {
+                    Matcher m = LEGACY_LINE.matcher(line);
+                    if (m.matches()) {
+                        lines.add(new OrderRecord.Line("", m.group(1), Integer.parseInt(m.group(2)),
+                                parseDouble(m.group(3)), parseDouble(m.group(4))));
+                    }
+                } else if (line.length() > 11 && line.charAt(10) == ':') {
+                    fields.put(line.substring(0, 10).trim(), line.substring(11).trim());
+                }
+            }
+            if (orderTime != null) {
+                orders.add(legacyOrder(orderTime, fields, lines, total));
+            }
+        }
+        return orders;
+    }
+
+    private static OrderRecord legacyOrder(String orderTime, Map<String, String> fields, List<OrderRecord.Line> lines, double total) {
+        long createdAt;
+        try {
+            createdAt = LocalDateTime.parse(orderTime, TIME_FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            createdAt = 0L;
+        }
+        return new OrderRecord(0L, createdAt, orderTime, fields.getOrDefault("Customer", ""),
+                fields.getOrDefault("Address", ""), fields.getOrDefault("Contact", ""),
+                fields.getOrDefault("Post Code", ""), fields.getOrDefault("Username", ""), lines, total);
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+}
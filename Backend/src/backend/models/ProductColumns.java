@@ -0,0 +1,280 @@
+package backend.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable, column-per-field copy of the inventory at one version: prices, stock
+ * and availability in primitive arrays, categories as indexes into a small table, and
+ * a row index by product id. Once built nothing changes it, so it can be handed to
+ * any number of readers through one volatile reference without copying or locking.
+ *
+ * Live Product objects remain the source of truth for reservations; this is the
+ * state last published to clients. update() shares every column a change does not
+ * touch, so a stock-only change copies just the stock and availability arrays.
+ */
+public final class ProductColumns {
+    private final long version;
+    private final String[] ids;
+    private final String[] names;
+    private final String[] descriptions;
+    private final String[] imagePaths;
+    private final String[] categories;
+    private final int[] categoryIndexes;
+    private final double[] prices;
+    private final int[] stock;
+    private final boolean[] available;
+    private final Map<String, Integer> rowsById;
+
+    private ProductColumns(long version, String[] ids, String[] names, String[] descriptions, String[] imagePaths,
+                           String[] categories, int[] categoryIndexes, double[] prices, int[] stock,
+                           boolean[] available, Map<String, Integer> rowsById) {
+        this.version = version;
+        this.ids = ids;
+        this.names = names;
+        this.descriptions = descriptions;
+        this.imagePaths = imagePaths;
+        this.categories = categories;
+        this.categoryIndexes = categoryIndexes;
+        this.prices = prices;
+        this.stock = stock;
+        this.available = available;
+        this.rowsById = rowsById;
+    }
+
+    /**
+     * Reads each product once, in list order; later rows with an id already seen are dropped.
+     */
+    public static ProductColumns of(long version, List<Product> products) {
+        int size = products.size();
+        String[] ids = new String[size];
+        String[] names = new String[size];
+        String[] descriptions = new String[size];
+        String[] imagePaths = new String[size];
+        int[] categoryIndexes = new int[size];
+        double[] prices = new double[size];
+        int[] stock = new int[size];
+        boolean[] available = new boolean[size];
+        Map<String, Integer> categoryTable = new LinkedHashMap<>();
+        Map<String, Integer> rowsById = new HashMap<>(size * 4 / 3 + 1);
+
+        int row = 0;
+        for (Product product : products) {
+            if (rowsById.putIfAbsent(product.getId(), row) != null) {
+                continue;
+            }
+            ids[row] = product.getId();
+            names[row] = product.getName();
+            descriptions[row] = product.getDescription();
+            imagePaths[row] = product.getImagePath();
+            categoryIndexes[row] = categoryTable.computeIfAbsent(product.getCategory(), c -> categoryTable.size());
+            prices[row] = product.getPrice();
+            stock[row] = product.getStockQuantity();
+            available[row] = product.isAvailable();
+            row++;
+        }
+        if (row < size) {
+            ids = Arrays.copyOf(ids, row);
+            names = Arrays.copyOf(names, row);
+            descriptions = Arrays.copyOf(descriptions, row);
+            imagePaths = Arrays.copyOf(imagePaths, row);
+            categoryIndexes = Arrays.copyOf(categoryIndexes, row);
+            prices = Arrays.copyOf(prices, row);
+            stock = Arrays.copyOf(stock, row);
+            available = Arrays.copyOf(available, row);
+        }
+        return new ProductColumns(version, ids, names, descriptions, imagePaths,
+                categoryTable.keySet().toArray(new String[0]), categoryIndexes, prices, stock, available,
+                Collections.unmodifiableMap(rowsById));
+    }
+
+    /**
+     * This inventory with changed rows replaced and removed ids dropped, labelled with version.
+     * Rows of products that are not in it yet are appended.
+     * @param changed detached copies; the new columns read them once and keep no reference
+     */
+    public ProductColumns update(long version, List<Product> changed, Collection<String> removed) {
+        boolean sameRows = removed.isEmpty();
+        for (Product product : changed) {
+            if (!rowsById.containsKey(product.getId()) || categoryIndex(product.getCategory()) < 0) {
+                sameRows = false;
+                break;
+            }
+        }
+        if (!sameRows) {
+            return rebuild(version, changed, removed);
+        }
+
+        int[] newStock = stock.clone();
+        boolean[] newAvailable = available.clone();
+        double[] newPrices = prices;
+        String[] newNames = names;
+        String[] newDescriptions = descriptions;
+        String[] newImagePaths = imagePaths;
+        int[] newCategoryIndexes = categoryIndexes;
+        for (Product product : changed) {
+            int row = rowsById.get(product.getId());
+            newStock[row] = product.getStockQuantity();
+            newAvailable[row] = product.isAvailable();
+            if (Double.compare(prices[row], product.getPrice()) != 0) {
+                newPrices = newPrices == prices ? prices.clone() : newPrices;
+                newPrices[row] = product.getPrice();
+            }
+            if (!Objects.equals(names[row], product.getName())) {
+                newNames = newNames == names ? names.clone() : newNames;
+                newNames[row] = product.getName();
+            }
+            if (!Objects.equals(descriptions[row], product.getDescription())) {
+                newDescriptions = newDescriptions == descriptions ? descriptions.clone() : newDescriptions;
+                newDescriptions[row] = product.getDescription();
+            }
+            if (!Objects.equals(imagePaths[row], product.getImagePath())) {
+                newImagePaths = newImagePaths == imagePaths ? imagePaths.clone() : newImagePaths;
+                newImagePaths[row] = product.getImagePath();
+            }
+            int category = categoryIndex(product.getCategory());
+            if (categoryIndexes[row] != category) {
+                newCategoryIndexes = newCategoryIndexes == categoryIndexes ? categoryIndexes.clone() : newCategoryIndexes;
+                newCategoryIndexes[row] = category;
+            }
+        }
+        return new ProductColumns(version, ids, newNames, newDescriptions, newImagePaths, categories,
+                newCategoryIndexes, newPrices, newStock, newAvailable, rowsById);
+    }
+
+    // Added or removed rows, or a category not in the table yet, need every column rebuilt
+    private ProductColumns rebuild(long version, List<Product> changed, Collection<String> removed) {
+        Map<String, Product> replacements = new LinkedHashMap<>();
+        for (Product product : changed) {
+            replacements.put(product.getId(), product);
+        }
+        Set<String> dropped = new HashSet<>(removed);
+        List<Product> rows = new ArrayList<>(ids.length + replacements.size());
+        for (int row = 0; row < ids.length; row++) {
+            if (dropped.contains(ids[row])) {
+                continue;
+            }
+            Product replacement = replacements.remove(ids[row]);
+            rows.add(replacement != null ? replacement : getProduct(row));
+        }
+        rows.addAll(replacements.values());
+        return of(version, rows);
+    }
+
+    private int categoryIndex(String category) {
+        for (int i = 0; i < categories.length; i++) {
+            if (Objects.equals(categories[i], category)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    // Row of the product with this exact id, or -1
+    public int indexOf(String id) {
+        Integer row = rowsById.get(id);
+        return row != null ? row : -1;
+    }
+
+    public String getId(int row) {
+        return ids[row];
+    }
+
+    public String getName(int row) {
+        return names[row];
+    }
+
+    public String getCategory(int row) {
+        return categories[categoryIndexes[row]];
+    }
+
+    public double getPrice(int row) {
+        return prices[row];
+    }
+
+    public String getDescription(int row) {
+        return descriptions[row];
+    }
+
+    public String getImagePath(int row) {
+        return imagePaths[row];
+    }
+
+    public int getStockQuantity(int row) {
+        return stock[row];
+    }
+
+    public boolean isAvailable(int row) {
+        return available[row];
+    }
+
+    // A straight pass over one primitive column
+    public int countOutOfStock() {
+        int count = 0;
+        for (int quantity : stock) {
+            if (quantity <= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * True if the row matches the product in every published field.
+     */
+    public boolean matches(int row, Product product) {
+        return stock[row] == product.getStockQuantity()
+                && available[row] == product.isAvailable()
+                && Double.compare(prices[row], product.getPrice()) == 0
+                && Objects.equals(names[row], product.getName())
+                && Objects.equals(getCategory(row), product.getCategory())
+                && Objects.equals(imagePaths[row], product.getImagePath())
+                && Objects.equals(descriptions[row], product.getDescription());
+    }
+
+    public boolean matches(int row, ProductColumns other, int otherRow) {
+        return stock[row] == other.stock[otherRow]
+                && available[row] == other.available[otherRow]
+                && Double.compare(prices[row], other.prices[otherRow]) == 0
+                && Objects.equals(names[row], other.names[otherRow])
+                && Objects.equals(getCategory(row), other.getCategory(otherRow))
+                && Objects.equals(imagePaths[row], other.imagePaths[otherRow])
+                && Objects.equals(descriptions[row], other.descriptions[otherRow]);
+    }
+
+    // A new, detached Product holding the row's values, e.g. to hand to an encoder
+    public Product getProduct(int row) {
+        return new Product(ids[row], names[row], getCategory(row), prices[row], descriptions[row],
+                imagePaths[row], stock[row], available[row]);
+    }
+
+    // Detached Products for rows from (inclusive) to to (exclusive)
+    public List<Product> getProducts(int from, int to) {
+        List<Product> products = new ArrayList<>(to - from);
+        for (int row = from; row < to; row++) {
+            products.add(getProduct(row));
+        }
+        return products;
+    }
+
+    public List<Product> getProducts() {
+        return getProducts(0, ids.length);
+    }
+}
@@ -0,0 +1,277 @@
+package backend.models;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log for stock changes.
+ *
+ * Every committed order appends one record per product holding that product's
+ * stock at append time, so replaying the log in order over products.txt
+ * reproduces the latest state. Once the log grows past compactBytes it is folded
+ * back into products.txt (Inventory.saveSnapshot) and truncated. The snapshot is
+ * written from the last logged stock of each product rather than the live value,
+ * which may include reservations of orders that are not logged (or never will be).
+ *
+ * Record layout: int length, int crc32 of the payload, payload (UTF product id, int stock).
+ * A torn or corrupt tail left by a crash is dropped on recovery.
+ *
+ * Configuration (system properties):
+ *   ezshop.wal.sync         order | batched | interval (default order)
+ *   ezshop.wal.batchSize    orders per fsync in batched mode (default 32)
+ *   ezshop.wal.intervalMs   fsync period in interval mode (default 200)
+ *   ezshop.wal.compactBytes log size that triggers compaction (default 1 MB)
+ */
+public class StockLog {
+    public enum SyncPolicy {
+        ORDER,    // fsync before the order is acknowledged
+        BATCHED,  // fsync every batchSize orders
+        INTERVAL; // fsync from a background thread every intervalMs
+
+        public static SyncPolicy fromString(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return ORDER;
+            }
+            try {
+                return SyncPolicy.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown WAL sync policy '" + value + "', falling back to ORDER");
+                return ORDER;
+            }
+        }
+    }
+
+    private static final int RECORD_HEADER = 8;
+
+    private final Path path;
+    private final SyncPolicy policy;
+    private final int batchSize;
+    private final long intervalMs;
+    private final long compactBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel channel;
+    private int unsyncedOrders = 0;
+    private boolean dirty = false;
+    private volatile boolean syncing = false;
+    // Product id -> stock as of its last logged record (or the replayed state at open);
+    // what a snapshot writes, guarded by lock
+    private final Map<String, Integer> loggedStock = new HashMap<>();
+
+    public StockLog(String path, SyncPolicy policy, int batchSize, long intervalMs, long compactBytes) {
+        this.path = Paths.get(path);
+        this.policy = policy;
+        this.batchSize = Math.max(1, batchSize);
+        this.intervalMs = Math.max(1, intervalMs);
+        this.compactBytes = compactBytes;
+    }
+
+    public static StockLog fromSystemProperties(String path) {
+        return new StockLog(path,
+                SyncPolicy.fromString(System.getProperty("ezshop.wal.sync")),
+                Integer.getInteger("ezshop.wal.batchSize", 32),
+                Long.getLong("ezshop.wal.intervalMs", 200L),
+                Long.getLong("ezshop.wal.compactBytes", 1024L * 1024L));
+    }
+
+    /**
+     * Opens the log, replays it over the inventory already loaded from products.txt,
+     * and compacts so the server starts from a clean snapshot.
+     * @return number of records replayed
+     */
+    public int open() throws IOException {
+        lock.lock();
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int replayed = replay();
+            // Nothing is reserved before the server starts serving, so live stock is the logged state
+            for (Product product : Inventory.getAllProducts()) {
+                loggedStock.put(product.getId(), product.getStockQuantity());
+            }
+            if (replayed > 0) {
+                System.out.println("Replayed " + replayed + " stock changes from " + path.getFileName());
+                compactLocked();
+            }
+            channel.position(channel.size());
+            if (policy == SyncPolicy.INTERVAL) {
+                startSyncThread();
+            }
+            System.out.println("Stock log opened (" + policy + " sync): " + path);
+            return replayed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Appends the current stock of every product in one committed order
+    public void append(Collection<Product> products) throws IOException {
+        lock.lock();
+        try {
+            // Stock is read under the log lock, so the last record for a product
+            // always carries its newest value
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 * products.size());
+            DataOutputStream out = new DataOutputStream(bytes);
+            Map<String, Integer> written = new HashMap<>();
+            for (Product product : products) {
+                int stock = product.getStockQuantity();
+                writeRecord(out, product.getId(), stock);
+                written.put(product.getId(), stock);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            loggedStock.putAll(written);
+
+            if (policy == SyncPolicy.ORDER) {
+                channel.force(false);
+            } else if (policy == SyncPolicy.BATCHED && ++unsyncedOrders >= batchSize) {
+                channel.force(false);
+                unsyncedOrders = 0;
+            } else {
+                dirty = true;
+            }
+
+            if (channel.size() >= compactBytes) {
+                compactLocked();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Folds the log into products.txt and empties it
+    public void compact() throws IOException {
+        lock.lock();
+        try {
+            compactLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            // Not interrupted: an interrupt during force() would close the channel
+            syncing = false;
+            if (channel != null && channel.isOpen()) {
+                compactLocked();
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing stock log: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void compactLocked() throws IOException {
+        // Appends are blocked while we hold the lock and the snapshot writes the
+        // logged stock, so it covers exactly the log; reservations taken since (in
+        // memory only) are not persisted until their own records are appended
+        channel.force(false);
+        Inventory.saveSnapshot(loggedStock);
+        channel.truncate(0);
+        channel.force(false);
+        unsyncedOrders = 0;
+        dirty = false;
+        System.out.println("Stock log compacted into products file");
+    }
+
+    private int replay() throws IOException {
+        ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+        channel.position(0);
+        while (data.hasRemaining() && channel.read(data) >= 0) {
+            // keep reading
+        }
+        data.flip();
+
+        int replayed = 0;
+        int goodEnd = 0;
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= RECORD_HEADER) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length < 6 || length > data.remaining()) {
+                break; // torn tail
+            }
+            byte[] payload = new byte[length];
+            data.get(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break; // corrupt record, nothing after it can be trusted
+            }
+
+            ByteBuffer record = ByteBuffer.wrap(payload);
+            byte[] idBytes = new byte[record.getShort() & 0xFFFF];
+            record.get(idBytes);
+            String productId = new String(idBytes, StandardCharsets.UTF_8);
+            int stock = record.getInt();
+
+            Product product = Inventory.getProductById(productId);
+            if (product != null) {
+                product.setStockQuantity(stock);
+            } else {
+                System.out.println("Stock log refers to unknown product " + productId + ", skipping");
+            }
+            replayed++;
+            goodEnd = data.position();
+        }
+
+        if (goodEnd < channel.size()) {
+            System.out.println("Dropping " + (channel.size() - goodEnd) + " bytes of incomplete stock log");
+            channel.truncate(goodEnd);
+        }
+        return replayed;
+    }
+
+    private static void writeRecord(DataOutputStream out, String productId, int stock) throws IOException {
+        byte[] id = productId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(2 + id.length + 4);
+        payload.putShort((short) id.length).put(id).putInt(stock);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        out.writeInt(payload.capacity());
+        out.writeInt((int) crc.getValue());
+        out.write(payload.array());
+    }
+
+    private void startSyncThread() {
+        syncing = true;
+        Thread syncThread = new Thread(() -> {
+            while (syncing) {
+                try {
+                    Thread.sleep(intervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                lock.lock();
+                try {
+                    if (dirty && channel.isOpen()) {
+                        channel.force(false);
+                        dirty = false;
+                    }
+                } catch (IOException e) {
+                    System.err.println("Stock log sync failed: " + e.getMessage());
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }, "StockLog-Sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+}
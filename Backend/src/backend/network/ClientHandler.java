@@ -1,13 +1,28 @@
 package backend.network;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import backend.models.OrderRecord;
 import backend.models.Product;
 import backend.models.User;
 import backend.models.UserManager;
@@ -20,10 +35,46 @@ public class ClientHandler implements Runnable {
     private ShopServer server;
     private ObjectInputStream ois;
     private ObjectOutputStream oos;
-    private boolean running = false;
+    private volatile boolean running = false;
+
+    // Framed transports: a blocking socket stream, or a connection owned by a NIO event loop
+    private DataOutputStream frameOut;
+    private NioConnection nioConnection;
+    private byte protocolVersion = 0;
+    private byte[] prefix = new byte[0];
+
+    // Encoded frames wait here for this client's writer, so a slow reader never blocks
+    // the thread producing a message. In VIRTUAL mode the writer is a dedicated virtual
+    // thread; otherwise a drain task on the server's shared pool runs only while frames
+    // are queued, so an idle connection holds no writer thread. NIO connections queue on
+    // their event loop instead, under the same limits. A client further behind than
+    // this is disconnected.
+    static final int MAX_QUEUED_FRAMES = Integer.getInteger("ezshop.client.maxQueuedFrames", 1024);
+    static final long MAX_QUEUED_BYTES = Long.getLong("ezshop.client.maxQueuedBytes", 8L * 1024 * 1024);
+    private final BlockingQueue<byte[]> outbound = new ArrayBlockingQueue<>(MAX_QUEUED_FRAMES);
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicBoolean evicted = new AtomicBoolean(false);
+    // Set once the stream is ready for queued frames; enqueue may run on any thread
+    private volatile OutputStream rawOut;
+    private Thread writer;
+    // Pooled writer only: true while a drain task is scheduled or running
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private static final java.time.format.DateTimeFormatter ORDER_TIME_FORMAT =
+            java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // GET_INVENTORY reply being streamed: a snapshot pinned to one version and the next of
+    // its messages to queue. A few messages at a time are queued as the writer drains, so
+    // a catalog of any size fits the queue limits. Inventory broadcasts newer than the
+    // snapshot wait in heldChanges until it has all been queued (guarded by streamLock).
+    private static final int STREAM_AHEAD_FRAMES = 4;
+    private final Object streamLock = new Object();
+    private InventorySnapshot streaming;
+    private int streamPosition;
+    private final List<MessageFrames.Shared> heldChanges = new ArrayList<>();
 
     private String sessionId = null;
     private User authenticatedUser = null;
+    private volatile boolean acceptsDeltas = false;
 
     
     /**
@@ -36,42 +87,46 @@ public class ClientHandler implements Runnable {
         this.server = shopServer;
         this.ID = ID;
     }
+
+    /**
+     * Blocking handler for a socket whose first bytes were already consumed (NIO legacy hand-off).
+     * @param prefix bytes read from the socket before the hand-off
+     */
+    ClientHandler(Socket clientSocket, ShopServer shopServer, String ID, byte[] prefix) {
+        this(clientSocket, shopServer, ID);
+        this.prefix = prefix;
+    }
+
+    /**
+     * Handler driven by a NIO event loop; messages arrive through handleMessage.
+     */
+    ClientHandler(NioConnection connection, ShopServer shopServer, String ID, byte protocolVersion) {
+        this.nioConnection = connection;
+        this.protocolVersion = protocolVersion;
+        this.server = shopServer;
+        this.ID = ID;
+        this.running = true;
+    }
     
     @Override
     public void run(){
         try {
-            oos = new ObjectOutputStream(clienSocket.getOutputStream());
-            oos.flush();
-            ois = new ObjectInputStream(clienSocket.getInputStream());
-            this.running = true;
-
-            System.out.println("Client "+ ID + " conncted successfully.");
-
-            Object inputObject;
-            while (running && (inputObject = ois.readObject()) != null) {
-                // System.out.println("DEBUG: Received object: " + inputObject.getClass().getName());
-                if (inputObject.getClass().getName().endsWith("Message")) {
-                    try {
-                        java.lang.reflect.Method getTypeMethod = inputObject.getClass().getMethod("getType");
-                        java.lang.reflect.Method getDataMethod = inputObject.getClass().getMethod("getData");
-
-                        String type = (String) getTypeMethod.invoke(inputObject);
-                        Object data = getDataMethod.invoke(inputObject);
-
-                        Message serverMsg = new Message(type, data);
-                    
-                        System.out.println("type=" + serverMsg.getType() + 
-                                        ", data=" + serverMsg.getData());
-                        
-                        processRequest(serverMsg);
-                    } catch (Exception e) {
-                         System.out.println("Error processing message via reflection: " + e.getMessage());
-                        e.printStackTrace();
-                    }
-                } else {
-                    System.out.println("Not a Message object: " + inputObject);
-                }
+            InputStream input = new BufferedInputStream(
+                    new SequenceInputStream(new ByteArrayInputStream(prefix), clienSocket.getInputStream()));
+            OutputStream output = new BufferedOutputStream(clienSocket.getOutputStream());
+
+            // Peek at the opening bytes to tell framed clients from object stream clients
+            input.mark(MessageFrames.HANDSHAKE_LENGTH);
+            DataInputStream din = new DataInputStream(input);
+            int magic = din.readInt();
+            if (magic == MessageFrames.MAGIC) {
+                runFramed(din, output);
+            } else {
+                input.reset();
+                runObjectStream(input, output);
             }
+        } catch (EOFException e) {
+            System.out.println("Client " + this.ID + " closed the connection");
         } catch (IOException | ClassNotFoundException e) {
             if (running) {
                 System.err.println("Error handling client: " + this.ID + " : " + e.getMessage());
@@ -83,172 +138,282 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    private void runFramed(DataInputStream din, OutputStream output) throws IOException {
+        byte requested = din.readByte();
+        byte accepted = MessageFrames.negotiate(requested);
+        if (accepted == 0) {
+            throw new IOException("Unsupported protocol version " + requested);
+        }
+        this.protocolVersion = accepted;
+        this.frameOut = new DataOutputStream(output);
+        MessageFrames.writeFrame(frameOut, MessageFrames.handshake(accepted));
+        this.running = true;
+        startWriter(output);
+
+        System.out.println("Client "+ ID + " conncted successfully (framed protocol v" + accepted + ").");
+
+        while (running) {
+            handleMessage(MessageFrames.readFrame(din, protocolVersion));
+        }
+    }
+
+    private void runObjectStream(InputStream input, OutputStream output) throws IOException, ClassNotFoundException {
+        oos = new ObjectOutputStream(output);
+        oos.flush();
+        ois = new ObjectInputStream(input);
+        this.running = true;
+        // After the stream header everything goes out as pre-encoded bytes (MessageFrames.encodeLegacy)
+        startWriter(output);
+
+        System.out.println("Client "+ ID + " conncted successfully.");
+
+        Object inputObject;
+        while (running && (inputObject = ois.readObject()) != null) {
+            // Client and server share backend.network.Message, so the object is used as is
+            if (inputObject instanceof Message) {
+                handleMessage((Message) inputObject);
+            } else {
+                System.out.println("Not a Message object: " + inputObject);
+            }
+        }
+    }
+
+    // Entry point for every decoded message, whichever transport delivered it
+    void handleMessage(Message message) {
+        System.out.println("type=" + message.getType() + 
+                        ", data=" + message.getData());
+        try {
+            processRequest(message);
+        } catch (Exception e) {
+            System.out.println("Error processing message " + message.getType() + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
     
 
     /**
-     * @param message
+     * Handles one request type. Gets the handler it runs for and the request, whose
+     * correlation id goes on the reply.
      */
-    private void processRequest(Message message) {
-        System.out.println("Received message from: " + this.ID + ": " + message.getType());
-
-        switch (message.getType()) {
-            case "GET_INVENTORY":
-                this.sendInventoryUpdate();
-                break;
-            case "PURCHASE":
-                if(message.getData() instanceof Map){
-                    this.processPurchase((Map<String, Integer>) message.getData());
-                }
-                break;
-            case "PING":
-                this.sendPong();
-                break;
-            case "LOGIN":
-                if (message.getData() instanceof Map) {
-                    processLogin((Map<String, String>) message.getData());
-                }
-                break;
+    @FunctionalInterface
+    private interface RequestHandler {
+        void handle(ClientHandler client, Message request);
+    }
 
-            case "REGISTER":
-                if (message.getData() instanceof Map) {
-                    processRegister((Map<String, String>) message.getData());
-                }
-                break;
+    // Request type -> handler, looked up once per message instead of walking a switch
+    private static final Map<String, RequestHandler> REQUEST_HANDLERS = new HashMap<>();
+    static {
+        REQUEST_HANDLERS.put("GET_INVENTORY", ClientHandler::processInventoryRequest);
+        REQUEST_HANDLERS.put("PURCHASE", (client, request) -> {
+            if (request.getData() instanceof Map) {
+                client.processPurchase((Map<?, ?>) request.getData(), request.getCorrelationId());
+            }
+        });
+        REQUEST_HANDLERS.put("PING", (client, request) -> client.sendPong(request.getCorrelationId()));
+        REQUEST_HANDLERS.put("LOGIN", (client, request) -> {
+            if (request.getData() instanceof Map) {
+                client.processLogin((Map<String, String>) request.getData(), request.getCorrelationId());
+            }
+        });
+        REQUEST_HANDLERS.put("REGISTER", (client, request) -> {
+            if (request.getData() instanceof Map) {
+                client.processRegister((Map<String, String>) request.getData(), request.getCorrelationId());
+            }
+        });
+        REQUEST_HANDLERS.put("LOGOUT", (client, request) -> client.processLogout(request.getCorrelationId()));
+        REQUEST_HANDLERS.put("GET_USER_DATA", (client, request) -> {
+            if (request.getData() instanceof Map) {
+                client.processUserDataRequest((Map<String, String>) request.getData(), request.getCorrelationId());
+            }
+        });
+        REQUEST_HANDLERS.put("COMPLETE_ORDER", (client, request) -> {
+            if (request.getData() instanceof Map) {
+                client.processCompleteOrder((Map<?, ?>) request.getData(), request.getCorrelationId());
+            }
+        });
+    }
 
-            case "LOGOUT":
-                processLogout();
-                break;
+    private void processRequest(Message message) {
+        System.out.println("Received message from: " + this.ID + ": " + message.getType());
 
-            case "GET_USER_DATA":
-                if (message.getData() instanceof Map) {
-                    processUserDataRequest((Map<String, String>) message.getData());
-                }
-                break;
-        
-            case "COMPLETE_ORDER":
-                if (message.getData() instanceof Map) {
-                    processCompleteOrder((Map<String, Object>) message.getData());
-                }
-                break;
-                
-            default:
+        RequestHandler handler = REQUEST_HANDLERS.get(message.getType());
+        if (handler == null) {
             System.out.println("Unknown request from the client " + ID + ": " + message.getType());
-                break;
+            return;
         }
+        handler.handle(this, message);
     }
 
-   
-    private void sendPong() {
-        try {
-            Message pong = new Message("PONG", "Server alive");
-            oos.writeObject(pong);
-            oos.flush();
-        } catch (Exception e) {
-            System.err.println("Error sending pong to the client " + this.ID + ": " + e.getMessage());
+    private void processInventoryRequest(Message request) {
+        // Newer clients send {acceptsDeltas: true, knownVersion: n}; older ones send null
+        long knownVersion = -1;
+        if (request.getData() instanceof Map) {
+            Map<?, ?> data = (Map<?, ?>) request.getData();
+            this.acceptsDeltas = Boolean.TRUE.equals(data.get("acceptsDeltas"));
+            if (data.get("knownVersion") instanceof Number) {
+                knownVersion = ((Number) data.get("knownVersion")).longValue();
+            }
         }
+        this.sendInventoryUpdate(knownVersion);
+    }
+
+   
+    private void sendPong(int correlationId) {
+        Message pong = new Message("PONG", "Server alive", correlationId);
+        sendMessage(pong);
     }
 
-    private void processPurchase(Map<String, Integer> items) {
+    private void processPurchase(Map<?, ?> data, int correlationId) {
         if (!isAuthenticated()) {
             Map<String, String> response = new HashMap<>();
             response.put("error", "Authentication required for purchase");
-            Message authError = new Message("AUTH_REQUIRED", response);
+            Message authError = new Message("AUTH_REQUIRED", response, correlationId);
             sendMessage(authError);
             return;
         }
         
-        // Pre-validate all items before any stock updates
+        Map<String, Integer> items = readItems(data);
+        if (items == null) {
+            sendInvalidOrder(correlationId);
+            return;
+        }
+        placeOrder(items, extractCustomerInfo(), "Purchase processed successfully", correlationId);
+    }
+
+    /**
+     * Reserves the cart, builds the order, records the stock change and journals the
+     * order; the confirmation goes out once it is on disk. Any failure answers
+     * PURCHASE_FAILED and gives the stock back.
+     */
+    private void placeOrder(Map<String, Integer> items, Map<String, String> customerInfo,
+                            String successMessage, int correlationId) {
+        // Validate and reserve every line; only this cart's products are locked
         List<String> errors = new ArrayList<>();
-        List<Product> itemsToUpdate = new ArrayList<>();
-        Map<String, Integer> validatedItems = new HashMap<>();
+        List<Product> itemsToUpdate = server.reserveStock(items, errors);
+        
+        // If any validation failed, abort entire purchase
+        if (itemsToUpdate == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("errors", errors);
+            Message errorResponse = new Message("PURCHASE_FAILED", response, correlationId);
+            sendMessage(errorResponse);
+            return;
+        }
+        
+        // Built before anything is logged or broadcast, so a bad order only releases its reservation
+        OrderRecord order;
+        try {
+            order = buildOrder(itemsToUpdate, items, customerInfo);
+        } catch (RuntimeException e) {
+            System.err.println(" Could not build order for client " + this.ID + ": " + e);
+            server.releaseStock(items, itemsToUpdate);
+            sendCommitFailure(correlationId);
+            return;
+        }
+        
+        // Record in the stock log and broadcast
+        if (!server.commitStockChanges(items, itemsToUpdate)) {
+            sendCommitFailure(correlationId);
+            return;
+        }
         
-        synchronized (server) { // Synchronize the entire validation and update process
-            // First pass: Validate all items
-            for (Map.Entry<String, Integer> entry : items.entrySet()) {
-                String productId = entry.getKey();
-                int quantity = entry.getValue();
-                
-                Product product = null;
-                for (Product p : server.getInventory()) {
-                    if (p.getId().equals(productId)) {
-                        product = p;
-                        break;
+        for (Product product : itemsToUpdate) {
+            System.out.println(" Processed purchase: " + items.get(product.getId()) + " units of product " + product.getId());
+        }
+        
+        // Journal the order; the confirmation goes out once it is on disk
+        confirmWhenDurable(order, itemsToUpdate, items, successMessage, correlationId);
+    }
+
+    /**
+     * Hands the order to the server's group-commit journal and sends PURCHASE_CONFIRMED
+     * only after the journal has forced it to disk. If journaling fails the stock is
+     * given back and the client gets PURCHASE_FAILED instead.
+     */
+    private void confirmWhenDurable(OrderRecord order, List<Product> itemsToUpdate, Map<String, Integer> items,
+                                    String successMessage, int correlationId) {
+        List<String> updatedProducts = new ArrayList<>();
+        for (Product product : itemsToUpdate) {
+            updatedProducts.add(product.getId());
+        }
+        
+        // Completed on a pooled thread, not the journal writer, so a slow client cannot stall it
+        server.getOrderJournal().append(order)
+                .whenCompleteAsync((orderId, error) -> {
+                    if (error != null) {
+                        System.err.println(" Error logging complete order to file: " + error.getMessage());
+                        server.cancelStockChanges(items, itemsToUpdate);
+                        sendCommitFailure(correlationId);
+                        return;
                     }
-                }
-                
-                if (product == null) {
-                    errors.add("Product not found: " + productId);
-                } else if (product.getStockQuantity() < quantity) {
-                    errors.add("Insufficient stock for " + product.getName() + 
-                              ". Available: " + product.getStockQuantity() + 
-                              ", Requested: " + quantity);
-                } else {
-                    itemsToUpdate.add(product);
-                    validatedItems.put(productId, quantity);
-                }
-            }
-            
-            // If any validation failed, abort entire purchase
-            if (!errors.isEmpty()) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("errors", errors);
-                Message errorResponse = new Message("PURCHASE_FAILED", response);
-                sendMessage(errorResponse);
-                return;
+                    
+                    // Send success response
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("success", true);
+                    response.put("message", successMessage);
+                    response.put("orderId", orderId);
+                    response.put("updatedProducts", updatedProducts);
+                    response.put("totalItems", itemsToUpdate.size());
+                    
+                    Message confirmation = new Message("PURCHASE_CONFIRMED", response, correlationId);
+                    sendMessage(confirmation);
+                    
+                    System.out.println(" Order confirmation sent to client " + this.ID);
+                    server.fireOrderConfirmed(order);
+                }, server::execute);
+    }
+
+    private void sendInvalidOrder(int correlationId) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("errors", List.of("Invalid order data"));
+        sendMessage(new Message("PURCHASE_FAILED", response, correlationId));
+    }
+
+    // The cart as product id -> quantity, or null unless every entry is a String id
+    // with a whole-number quantity
+    private static Map<String, Integer> readItems(Object data) {
+        if (!(data instanceof Map)) {
+            return null;
+        }
+        Map<String, Integer> items = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) data).entrySet()) {
+            if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof Number)) {
+                return null;
             }
-            
-            // Second pass: Update all stocks atomically
-            List<String> updatedProducts = new ArrayList<>();
-            boolean allUpdatesSuccessful = true;
-            
-            for (Map.Entry<String, Integer> entry : validatedItems.entrySet()) {
-                String productId = entry.getKey();
-                int quantity = entry.getValue();
-                
-                // Use the enhanced updateProductStock method with collision detection
-                boolean updateSuccess = server.updateProductStock(productId, quantity);
-                
-                if (updateSuccess) {
-                    updatedProducts.add(productId);
-                    System.out.println(" Processed purchase: " + quantity + " units of product " + productId);
-                } else {
-                    // This should rarely happen due to pre-validation, but handle it
-                    errors.add("Failed to update stock for product: " + productId);
-                    allUpdatesSuccessful = false;
-                    break;
-                }
+            Number quantity = (Number) entry.getValue();
+            if (quantity.doubleValue() != quantity.intValue()) {
+                return null;
             }
-            
-            if (!allUpdatesSuccessful) {
-                // Rollback would be complex, so we rely on pre-validation
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("errors", errors);
-                Message errorResponse = new Message("PURCHASE_FAILED", response);
-                sendMessage(errorResponse);
-                return;
+            items.put((String) entry.getKey(), quantity.intValue());
+        }
+        return items;
+    }
+
+    // Customer details with String keys and String (or numeric, e.g. a post code) values, or null
+    private static Map<String, String> readCustomerInfo(Object data) {
+        if (!(data instanceof Map)) {
+            return null;
+        }
+        Map<String, String> customerInfo = new HashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) data).entrySet()) {
+            Object value = entry.getValue();
+            if (!(entry.getKey() instanceof String)
+                    || (value != null && !(value instanceof String) && !(value instanceof Number))) {
+                return null;
             }
-            
-            // Refresh server inventory and broadcast update
-            server.refreshInventoryFromFile();
-            server.broadcastInventoryUpdateMessage();
-            
-            // Log the complete order
-            logCompleteOrderToFile(itemsToUpdate, validatedItems, extractCustomerInfo());
-            
-            // Send success response
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Purchase processed successfully");
-            response.put("updatedProducts", updatedProducts);
-            response.put("totalItems", validatedItems.size());
-            
-            Message confirmation = new Message("PURCHASE_CONFIRMED", response);
-            sendMessage(confirmation);
-            
-            System.out.println("Purchase confirmation sent to client " + this.ID);
+            customerInfo.put((String) entry.getKey(), value != null ? value.toString() : null);
         }
+        return customerInfo;
+    }
+
+    private void sendCommitFailure(int correlationId) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("errors", List.of("Order could not be recorded, please try again"));
+        sendMessage(new Message("PURCHASE_FAILED", response, correlationId));
     }
 
     // Helper method to extract customer info for logging
@@ -273,7 +438,7 @@ public class ClientHandler implements Runnable {
         return customerInfo;
     }
 
-    private void processLogin(Map<String, String> loginData) {
+    private void processLogin(Map<String, String> loginData, int correlationId) {
         String username = loginData.get("username");
         String password = loginData.get("password");
         
@@ -288,19 +453,19 @@ public class ClientHandler implements Runnable {
             response.put("username", user.getUsername());
             response.put("fullName", user.getFullName());
             
-            Message loginResponse = new Message("LOGIN_SUCCESS", response);
+            Message loginResponse = new Message("LOGIN_SUCCESS", response, correlationId);
             sendMessage(loginResponse);
         } else {
             Map<String, String> response = new HashMap<>();
             response.put("success", "false");
             response.put("error", "Invalid username or password");
             
-            Message loginResponse = new Message("LOGIN_FAILED", response);
+            Message loginResponse = new Message("LOGIN_FAILED", response, correlationId);
             sendMessage(loginResponse);
         }
     }
 
-    private void processRegister(Map<String, String> registerData) {
+    private void processRegister(Map<String, String> registerData, int correlationId) {
         String username = registerData.get("username");
         String password = registerData.get("password");
         String email = registerData.get("email");
@@ -314,39 +479,39 @@ public class ClientHandler implements Runnable {
         if (success) {
             response.put("success", true);
             response.put("message", "Registration successful");
-            Message registerResponse = new Message("REGISTER_SUCCESS", response);
+            Message registerResponse = new Message("REGISTER_SUCCESS", response, correlationId);
             sendMessage(registerResponse);
         } else {
             response.put("success", false);
             response.put("error", "Username or email already exists");
-            Message registerResponse = new Message("REGISTER_FAILED", response);
+            Message registerResponse = new Message("REGISTER_FAILED", response, correlationId);
             sendMessage(registerResponse);
         }
     }
 
-    private void processLogout() {
+    private void processLogout(int correlationId) {
         if (sessionId != null) {
             SessionManager.removeSession(sessionId);
             sessionId = null;
             authenticatedUser = null;
             
-            Message logoutResponse = new Message("LOGOUT_SUCCESS", "Logged out successfully");
+            Message logoutResponse = new Message("LOGOUT_SUCCESS", "Logged out successfully", correlationId);
             sendMessage(logoutResponse);
         }
     }
 
-    private void processUserDataRequest(Map<String, String> requestData) {
+    private void processUserDataRequest(Map<String, String> requestData, int correlationId) {
         String sessionId = requestData.get("sessionId");
         
         if (sessionId == null || sessionId.trim().isEmpty()) {
-            Message errorResponse = new Message("USER_DATA_ERROR", "Invalid session ID");
+            Message errorResponse = new Message("USER_DATA_ERROR", "Invalid session ID", correlationId);
             sendMessage(errorResponse);
             return;
         }
         
         UserSession session = SessionManager.getSession(sessionId);
         if (session == null) {
-            Message errorResponse = new Message("USER_DATA_ERROR", "Session expired or invalid");
+            Message errorResponse = new Message("USER_DATA_ERROR", "Session expired or invalid", correlationId);
             sendMessage(errorResponse);
             return;
         }
@@ -363,10 +528,10 @@ public class ClientHandler implements Runnable {
             userData.put("address", user.getAddress());
             userData.put("phone", user.getPhone());
             
-            Message userDataResponse = new Message("USER_DATA_RESPONSE", userData);
+            Message userDataResponse = new Message("USER_DATA_RESPONSE", userData, correlationId);
             sendMessage(userDataResponse);
         } else {
-            Message errorResponse = new Message("USER_DATA_ERROR", "User not found");
+            Message errorResponse = new Message("USER_DATA_ERROR", "User not found", correlationId);
             sendMessage(errorResponse);
         }
     }
@@ -376,60 +541,244 @@ public class ClientHandler implements Runnable {
     }
 
     public void sendInventoryUpdate() {
-        try {
-            List<Product> inventory = server.getInventory();
-            int chunkSize = 20;
-            int totalProducts = inventory.size();
-
-            Message countMessage = new Message("INVENTORY_COUNT", totalProducts);
-            oos.writeObject(countMessage);
-            oos.flush();
-
-            for(int i=0; i<totalProducts; i+=chunkSize){
-                int endIndex = Math.min(i+chunkSize, totalProducts);
-                List<Product> chunk = new ArrayList<>();
-                for(int j=i; j<endIndex; j++){
-                    chunk.add(inventory.get(j));
-                }
-                Message chunkMessage = new Message("INVENTORY_CHUNK", chunk);
-                oos.writeObject(chunkMessage);
-                oos.flush();
+        sendInventoryUpdate(-1);
+    }
 
-                Thread.sleep(10);
+    // Full snapshot, or NOT_MODIFIED / deltas when the client already has knownVersion
+    public void sendInventoryUpdate(long knownVersion) {
+        server.sendInventory(this, knownVersion);
+    }
+
+    /**
+     * Starts streaming snapshot to this client, replacing a stream in progress (the
+     * client starts over on INVENTORY_COUNT). Called under ShopServer's publishLock, so
+     * every later broadcast is held until the snapshot has been queued.
+     */
+    void startInventoryStream(InventorySnapshot snapshot) {
+        synchronized (streamLock) {
+            streaming = snapshot;
+            streamPosition = 0;
+            // Everything held is at most the new snapshot's version
+            heldChanges.clear();
+        }
+    }
+
+    boolean isStreamingInventory() {
+        synchronized (streamLock) {
+            return streaming != null;
+        }
+    }
+
+    /**
+     * Queues the next messages of the inventory stream while fewer than
+     * STREAM_AHEAD_FRAMES are waiting; called when the stream starts and whenever the
+     * writer has drained the queue. The held broadcasts follow the last message.
+     * @return true if anything was queued
+     */
+    boolean feedInventory() {
+        synchronized (streamLock) {
+            if (streaming == null) {
+                return false;
+            }
+            if (!running) {
+                streaming = null;
+                heldChanges.clear();
+                return false;
+            }
+            List<MessageFrames.Shared> messages = streaming.getMessages();
+            boolean queued = false;
+            while (streamPosition < messages.size() && getQueuedFrames() < STREAM_AHEAD_FRAMES) {
+                sendMessage(messages.get(streamPosition++));
+                queued = true;
+            }
+            if (streamPosition == messages.size()) {
+                System.out.println("Sent inventory version " + streaming.getVersion() + " to client " + this.ID
+                        + " in " + (messages.size() - 2) + " chunks");
+                for (MessageFrames.Shared change : heldChanges) {
+                    sendMessage(change);
+                }
+                queued |= !heldChanges.isEmpty();
+                heldChanges.clear();
+                streaming = null;
             }
+            return queued;
+        }
+    }
 
-            Message completeMessage = new Message("INVENTORY_COMPLETE", null);
+    /**
+     * Broadcast path for an inventory change. While a snapshot is streaming, changes it
+     * already contains are dropped and newer ones wait until it has been queued.
+     * @param fullUpdate message is a complete INVENTORY_UPDATE, superseding held ones
+     */
+    void sendInventoryChange(MessageFrames.Shared message, long version, boolean fullUpdate) {
+        synchronized (streamLock) {
+            if (streaming != null) {
+                if (version > streaming.getVersion()) {
+                    if (fullUpdate) {
+                        heldChanges.clear();
+                    }
+                    heldChanges.add(message);
+                    if (heldChanges.size() > MAX_QUEUED_FRAMES) {
+                        evictSlowConsumer();
+                    }
+                }
+                return;
+            }
+        }
+        sendMessage(message);
+    }
 
-            oos.writeObject(completeMessage);
-            oos.flush();
-            System.out.println("Successfully sent the inventory info to the client " + this.ID + " in chunks");
+    public void sendMessage(Message message){
+        try {
+            writeMessage(message);
         } catch (Exception e) {
-            System.err.println("Error sending inventory information to the client " + this.ID + ": " + e.getMessage() );
+            System.err.println("Error sending custom message to the client: " + this.ID + ": " + e.getMessage());
         }
     }
 
-    public void sendMessage(Message message){
+    // Broadcast path: reuses the bytes already encoded for other clients on the same format
+    public void sendMessage(MessageFrames.Shared message) {
         try {
-            oos.reset();
-            oos.writeObject(message);
-            oos.flush();
+            if (nioConnection != null || frameOut != null) {
+                enqueue(message.frame(protocolVersion));
+            } else {
+                enqueue(message.legacy());
+            }
         } catch (Exception e) {
             System.err.println("Error sending custom message to the client: " + this.ID + ": " + e.getMessage());
         }
     }
 
-    
-    public void close() {
-        this.running = false;
+    private void writeMessage(Message message) throws IOException {
+        if (nioConnection != null || frameOut != null) {
+            enqueue(MessageFrames.encode(message, protocolVersion));
+        } else {
+            enqueue(MessageFrames.encodeLegacy(message));
+        }
+    }
+
+    // Hands an encoded frame to the writer; a client that has fallen too far behind is dropped
+    void enqueue(byte[] frame) {
+        if (!running) {
+            return;
+        }
+        boolean accepted;
+        if (nioConnection != null) {
+            accepted = nioConnection.send(frame, MAX_QUEUED_FRAMES, MAX_QUEUED_BYTES);
+        } else if (queuedBytes.get() + frame.length > MAX_QUEUED_BYTES) {
+            accepted = false;
+        } else {
+            queuedBytes.addAndGet(frame.length);
+            accepted = outbound.offer(frame);
+            if (!accepted) {
+                queuedBytes.addAndGet(-frame.length);
+            } else if (server.getMode() != ServerMode.VIRTUAL && rawOut != null && draining.compareAndSet(false, true)) {
+                server.execute(this::drainOutbound);
+            }
+        }
+        if (!accepted) {
+            evictSlowConsumer();
+        }
+    }
+
+    private void evictSlowConsumer() {
+        if (!evicted.compareAndSet(false, true)) {
+            return;
+        }
+        System.err.println("Client " + this.ID + " is not keeping up (" + getQueuedFrames() + " frames, "
+                + getQueuedBytes() + " bytes queued), disconnecting");
+        server.recordSlowConsumerEviction();
+        close();
+        server.removeClient(this);
+    }
+
+    private void startWriter(OutputStream output) {
+        if (server.getMode() == ServerMode.VIRTUAL) {
+            this.rawOut = output;
+            this.writer = server.newConnectionThread(this::writeLoop, "ClientWriter-" + this.ID);
+            this.writer.start();
+            return;
+        }
+        this.rawOut = output;
+        if (!outbound.isEmpty() && draining.compareAndSet(false, true)) {
+            server.execute(this::drainOutbound);
+        }
+    }
+
+    // Pooled writer: writes everything queued, flushes once, and gives the thread back
+    private void drainOutbound() {
         try {
-            if(oos != null){
-                oos.close();
+            while (true) {
+                byte[] frame;
+                while ((frame = outbound.poll()) != null) {
+                    rawOut.write(frame);
+                    queuedBytes.addAndGet(-frame.length);
+                }
+                rawOut.flush();
+                if (feedInventory()) {
+                    continue;
+                }
+                draining.set(false);
+                // A frame queued after the last poll but before the reset would otherwise wait
+                if (outbound.isEmpty() || !draining.compareAndSet(false, true)) {
+                    return;
+                }
             }
+        } catch (IOException e) {
+            draining.set(false);
+            if (running) {
+                System.err.println("Error writing to client " + this.ID + ": " + e.getMessage());
+                close();
+            }
+        }
+    }
 
-            if(ois != null){
-                ois.close();
+    private void writeLoop() {
+        try {
+            while (running) {
+                byte[] frame = outbound.take();
+                rawOut.write(frame);
+                queuedBytes.addAndGet(-frame.length);
+                // Write whatever queued up meanwhile before paying for one flush
+                while ((frame = outbound.poll()) != null) {
+                    rawOut.write(frame);
+                    queuedBytes.addAndGet(-frame.length);
+                }
+                rawOut.flush();
+                feedInventory();
+            }
+        } catch (InterruptedException e) {
+            // close() stops the writer
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Error writing to client " + this.ID + ": " + e.getMessage());
+                close();
             }
+        }
+    }
+
+    public int getQueuedFrames() {
+        return nioConnection != null ? nioConnection.getQueuedFrames() : outbound.size();
+    }
+
+    public long getQueuedBytes() {
+        return nioConnection != null ? nioConnection.getQueuedBytes() : queuedBytes.get();
+    }
 
+    
+    public void close() {
+        this.running = false;
+        if (nioConnection != null) {
+            nioConnection.close();
+            return;
+        }
+        if (writer != null) {
+            writer.interrupt();
+        }
+        outbound.clear();
+        try {
+            // Closing the socket closes its streams and unblocks the reader and writer;
+            // closing the streams first would flush into a client that may not be reading
             if(clienSocket != null && !clienSocket.isClosed()){
                 clienSocket.close();
             }
@@ -447,164 +796,55 @@ public class ClientHandler implements Runnable {
     public boolean isRunning(){
         return this.running;
     }
+
+    public boolean acceptsDeltas(){
+        return this.acceptsDeltas;
+    }
     
-    private void processCompleteOrder(Map<String, Object> orderData) {
+    private void processCompleteOrder(Map<?, ?> orderData, int correlationId) {
         if (!isAuthenticated()) {
             Map<String, String> response = new HashMap<>();
             response.put("error", "Authentication required for purchase");
-            Message authError = new Message("AUTH_REQUIRED", response);
+            Message authError = new Message("AUTH_REQUIRED", response, correlationId);
             sendMessage(authError);
             return;
         }
         
-        Map<String, String> customerInfo = (Map<String, String>) orderData.get("customerInfo");
-        Map<String, Integer> items = (Map<String, Integer>) orderData.get("items");
-        
-        List<String> errors = new ArrayList<>();
-        List<Product> itemsToUpdate = new ArrayList<>();
-        Map<String, Integer> validatedItems = new HashMap<>();
-        
-        synchronized (server) { // Synchronize the entire process
-            // Validate all items first
-            for (Map.Entry<String, Integer> entry : items.entrySet()) {
-                String productId = entry.getKey();
-                int quantity = entry.getValue();
-                
-                Product product = null;
-                for (Product p : server.getInventory()) {
-                    if (p.getId().equals(productId)) {
-                        product = p;
-                        break;
-                    }
-                }
-                
-                if (product == null) {
-                    errors.add("Product not found: " + productId);
-                } else if (product.getStockQuantity() < quantity) {
-                    errors.add("Insufficient stock for " + product.getName() + 
-                              ". Available: " + product.getStockQuantity() + 
-                              ", Requested: " + quantity);
-                } else {
-                    itemsToUpdate.add(product);
-                    validatedItems.put(productId, quantity);
-                }
-            }
-            
-            if (!errors.isEmpty()) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("errors", errors);
-                Message errorResponse = new Message("PURCHASE_FAILED", response);
-                sendMessage(errorResponse);
-                return;
-            }
-            
-            // Update all stocks atomically
-            List<String> updatedProducts = new ArrayList<>();
-            boolean allUpdatesSuccessful = true;
-            
-            for (Map.Entry<String, Integer> entry : validatedItems.entrySet()) {
-                String productId = entry.getKey();
-                int quantity = entry.getValue();
-                
-                boolean updateSuccess = server.updateProductStock(productId, quantity);
-                if (updateSuccess) {
-                    updatedProducts.add(productId);
-                } else {
-                    allUpdatesSuccessful = false;
-                    break;
-                }
-            }
-            
-            if (!allUpdatesSuccessful) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("errors", List.of("Failed to process order due to stock conflicts"));
-                Message errorResponse = new Message("PURCHASE_FAILED", response);
-                sendMessage(errorResponse);
-                return;
-            }
-            
-            // Refresh and broadcast
-            server.refreshInventoryFromFile();
-            server.broadcastInventoryUpdateMessage();
-            
-            // Log the complete order with customer details
-            logCompleteOrderToFile(itemsToUpdate, validatedItems, customerInfo);
-            
-            // Send success response
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Order processed successfully");
-            response.put("updatedProducts", updatedProducts);
-            response.put("totalItems", validatedItems.size());
-            
-            Message confirmation = new Message("PURCHASE_CONFIRMED", response);
-            sendMessage(confirmation);
-            
-            System.out.println(" Complete order confirmation sent to client " + this.ID);
+        // Checked before anything is reserved: both come straight from the client
+        Map<String, String> customerInfo = readCustomerInfo(orderData.get("customerInfo"));
+        Map<String, Integer> items = readItems(orderData.get("items"));
+        if (customerInfo == null || items == null) {
+            sendInvalidOrder(correlationId);
+            return;
         }
+        
+        // Journal the complete order with customer details, then confirm
+        placeOrder(items, customerInfo, "Order processed successfully", correlationId);
     }
 
     // Enhanced order logging with customer details
-    private void logCompleteOrderToFile(List<Product> products, Map<String, Integer> quantities, Map<String, String> customerInfo) {
-        try {
-            java.time.LocalDateTime now = java.time.LocalDateTime.now();
-            java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            String timestamp = now.format(formatter);
-            
-            // Get authenticated user info
-            String customerName = customerInfo.get("name");
-            String address = customerInfo.get("address");
-            String contact = customerInfo.get("contact");
-            String postCode = customerInfo.get("postCode");
-            
-            String username = "";
-            if (authenticatedUser != null) {
-                username = authenticatedUser.getUsername();
-            }
-            
-            // Build order string with complete customer details
-            StringBuilder sb = new StringBuilder();
-            sb.append("Order Time: ").append(timestamp).append("\n");
-            sb.append("Customer  : ").append(customerName).append("\n");
-            sb.append("Address   : ").append(address).append("\n");
-            sb.append("Contact   : ").append(contact).append("\n");
-            sb.append("Post Code : ").append(postCode).append("\n");
-            
-            if (!username.isEmpty()) {
-                sb.append("Username  : ").append(username).append("\n");
-            }
-            
-            sb.append("Items     :\n");
-
-            double total = 0.0;
-            for (Product product : products) {
-                Integer qty = quantities.get(product.getId());
-                if (qty != null) {
-                    double unitPrice = product.getPrice();
-                    double subtotal = unitPrice * qty;
-                    sb.append("- Product: ").append(product.getName())
-                            .append(", Quantity: ").append(qty)
-                            .append(", Unit Price: $").append(String.format("%.2f", unitPrice))
-                            .append(", Subtotal: $").append(String.format("%.2f", subtotal)).append("\n");
-                    total += subtotal;
-                }
-            }
-            sb.append("Total: $").append(String.format("%.2f", total)).append("\n");
-            sb.append("----------------------------------------\n\n");
-
-            // Write to orders.txt file
-            java.io.File ordersFile = new java.io.File("Backend/data/orders.txt");
-            try (java.io.FileWriter writer = new java.io.FileWriter(ordersFile, true);
-                 java.io.BufferedWriter bufferedWriter = new java.io.BufferedWriter(writer)) {
-                bufferedWriter.write(sb.toString());
-                System.out.println(" Complete order logged to orders.txt successfully");
+    private OrderRecord buildOrder(List<Product> products, Map<String, Integer> quantities, Map<String, String> customerInfo) {
+        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        String timestamp = now.format(ORDER_TIME_FORMAT);
+        
+        String username = "";
+        if (authenticatedUser != null) {
+            username = authenticatedUser.getUsername();
+        }
+
+        List<OrderRecord.Line> lines = new ArrayList<>();
+        double total = 0.0;
+        for (Product product : products) {
+            Integer qty = quantities.get(product.getId());
+            if (qty != null) {
+                double unitPrice = product.getPrice();
+                double subtotal = unitPrice * qty;
+                lines.add(new OrderRecord.Line(product.getId(), product.getName(), qty, unitPrice, subtotal));
+                total += subtotal;
             }
-            
-        } catch (java.io.IOException e) {
-            System.err.println(" Error logging complete order to file: " + e.getMessage());
-            e.printStackTrace();
         }
+        return new OrderRecord(0L, System.currentTimeMillis(), timestamp, customerInfo.get("name"),
+                customerInfo.get("address"), customerInfo.get("contact"), customerInfo.get("postCode"),
+                username, lines, total);
     }
 }
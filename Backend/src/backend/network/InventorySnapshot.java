@@ -0,0 +1,76 @@
+package backend.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import backend.models.ProductColumns;
+
+/**
+ * The GET_INVENTORY reply for one inventory version: INVENTORY_COUNT, the products
+ * in INVENTORY_CHUNK messages of roughly chunkBytes each, then INVENTORY_COMPLETE.
+ *
+ * ShopServer builds it once per version from the published ProductColumns, and every client
+ * asking for that version is sent the same messages, so each wire format is encoded
+ * once (see MessageFrames.Shared). Pacing comes from the client's outbound queue,
+ * which is written only as fast as the socket accepts.
+ */
+final class InventorySnapshot {
+    // Fixed fields of a product row (price, stock, flags, length prefixes)
+    private static final int ROW_OVERHEAD = 32;
+
+    private final long version;
+    private final int productCount;
+    private final List<MessageFrames.Shared> messages;
+
+    private InventorySnapshot(long version, int productCount, List<MessageFrames.Shared> messages) {
+        this.version = version;
+        this.productCount = productCount;
+        this.messages = messages;
+    }
+
+    static InventorySnapshot build(ProductColumns rows, int chunkBytes) {
+        List<MessageFrames.Shared> messages = new ArrayList<>();
+        messages.add(new MessageFrames.Shared(new Message("INVENTORY_COUNT", rows.size())));
+
+        int chunkStart = 0;
+        int chunkSize = 0;
+        for (int row = 0; row < rows.size(); row++) {
+            int rowSize = estimateSize(rows, row);
+            if (row > chunkStart && chunkSize + rowSize > chunkBytes) {
+                messages.add(new MessageFrames.Shared(new Message("INVENTORY_CHUNK", rows.getProducts(chunkStart, row))));
+                chunkStart = row;
+                chunkSize = 0;
+            }
+            chunkSize += rowSize;
+        }
+        if (rows.size() > chunkStart) {
+            messages.add(new MessageFrames.Shared(new Message("INVENTORY_CHUNK", rows.getProducts(chunkStart, rows.size()))));
+        }
+
+        messages.add(new MessageFrames.Shared(new Message("INVENTORY_COMPLETE", rows.getVersion())));
+        return new InventorySnapshot(rows.getVersion(), rows.size(), Collections.unmodifiableList(messages));
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    int getProductCount() {
+        return productCount;
+    }
+
+    List<MessageFrames.Shared> getMessages() {
+        return messages;
+    }
+
+    // Encoded size is dominated by the strings; close enough to size chunks by bytes
+    private static int estimateSize(ProductColumns rows, int row) {
+        return ROW_OVERHEAD + length(rows.getId(row)) + length(rows.getName(row)) + length(rows.getCategory(row))
+                + length(rows.getDescription(row)) + length(rows.getImagePath(row));
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
@@ -0,0 +1,308 @@
+package backend.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One client channel owned by a NioServer event loop.
+ * Reads and writes only happen on the loop thread; other threads hand frames over through send().
+ * Decoded requests go to an inbox that one task at a time drains on the server's request
+ * workers, so handlers may block (file I/O, fsync, a full order journal) without stalling
+ * the loop, and a client's requests still run in the order they arrived. Once
+ * MAX_PENDING_REQUESTS are waiting the loop stops reading from the client until the
+ * workers catch up.
+ */
+class NioConnection {
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    // Queued frames handed to one gathering write
+    private static final int MAX_GATHER = 64;
+    private static final int MAX_PENDING_REQUESTS = Integer.getInteger("ezshop.server.maxPendingRequests", 64);
+
+    private final SocketChannel channel;
+    private final NioServer.EventLoop loop;
+    private final ShopServer server;
+    private final String ID;
+    private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    // Tracked separately because ConcurrentLinkedQueue.size() walks the queue
+    private final AtomicInteger queuedFrames = new AtomicInteger();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final Queue<Message> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+    // True while a drain task is scheduled or running; at most one per connection
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    // Loop thread only: OP_READ is off because the inbox is full
+    private boolean readPaused = false;
+    // Loop thread only: set during flush(), so frames queued from inside it are written by it
+    private boolean flushing = false;
+
+    private SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private ClientHandler handler;
+    private byte[] legacyPrefix;
+    private byte protocolVersion = 0;
+
+    NioConnection(SocketChannel channel, NioServer.EventLoop loop, ShopServer server, String ID) {
+        this.channel = channel;
+        this.loop = loop;
+        this.server = server;
+        this.ID = ID;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    SocketChannel getChannel() {
+        return this.channel;
+    }
+
+    byte[] getLegacyPrefix() {
+        return this.legacyPrefix;
+    }
+
+    String getID() {
+        return this.ID;
+    }
+
+    // Called on the loop thread when the channel is readable
+    void onReadable() throws IOException {
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            closeQuietly();
+            return;
+        }
+        decodeBuffered();
+    }
+
+    // Decodes the complete frames in readBuffer into the inbox, until it is full (loop thread)
+    private void decodeBuffered() throws IOException {
+        readBuffer.flip();
+        try {
+            if (handler == null && !readHandshake()) {
+                return;
+            }
+            while (handler != null && !readPaused && readBuffer.remaining() >= MessageFrames.HEADER_LENGTH) {
+                int length = readBuffer.getInt(readBuffer.position());
+                MessageFrames.checkLength(length);
+                if (readBuffer.remaining() < MessageFrames.HEADER_LENGTH + length) {
+                    ensureCapacity(MessageFrames.HEADER_LENGTH + length);
+                    break;
+                }
+                readBuffer.position(readBuffer.position() + MessageFrames.HEADER_LENGTH);
+                Message message = MessageFrames.decode(readBuffer.array(), readBuffer.position(), length, protocolVersion);
+                readBuffer.position(readBuffer.position() + length);
+                dispatch(message);
+            }
+        } finally {
+            readBuffer.compact();
+        }
+    }
+
+    private void dispatch(Message message) {
+        inbox.add(message);
+        if (pendingRequests.incrementAndGet() >= MAX_PENDING_REQUESTS) {
+            readPaused = true;
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+        if (draining.compareAndSet(false, true)) {
+            server.executeRequest(this::drain);
+        }
+    }
+
+    // Runs on a request worker: handles queued requests in arrival order
+    private void drain() {
+        while (true) {
+            Message message;
+            while ((message = inbox.poll()) != null) {
+                if (!closed.get()) {
+                    handler.handleMessage(message);
+                }
+                if (pendingRequests.decrementAndGet() == MAX_PENDING_REQUESTS / 2) {
+                    loop.requestResume(this);
+                }
+            }
+            draining.set(false);
+            // A request queued after the last poll but before the reset would otherwise wait
+            if (inbox.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    // Called on the loop thread once the inbox has room again
+    void resumeReading() throws IOException {
+        if (!readPaused || closed.get() || key == null || !key.isValid()) {
+            return;
+        }
+        readPaused = false;
+        key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        // Frames already buffered will not raise another read event
+        decodeBuffered();
+    }
+
+    private boolean readHandshake() throws IOException {
+        if (readBuffer.remaining() < 2) {
+            return false;
+        }
+        if ((readBuffer.getShort(readBuffer.position()) & 0xFFFF) == MessageFrames.LEGACY_STREAM_MAGIC) {
+            // Object stream client: give the socket back to a blocking ClientHandler
+            byte[] prefix = new byte[readBuffer.remaining()];
+            readBuffer.get(prefix);
+            loop.handOffToBlocking(this, prefix);
+            return false;
+        }
+        if (readBuffer.remaining() < MessageFrames.HANDSHAKE_LENGTH) {
+            return false;
+        }
+        int magic = readBuffer.getInt();
+        byte requested = readBuffer.get();
+        byte accepted = MessageFrames.negotiate(requested);
+        if (magic != MessageFrames.MAGIC || accepted == 0) {
+            throw new IOException("Bad handshake from client " + ID);
+        }
+        this.protocolVersion = accepted;
+        this.handler = new ClientHandler(this, server, ID, accepted);
+        server.addClient(handler);
+        send(MessageFrames.handshake(accepted));
+        System.out.println("Client " + ID + " connected on event loop " + loop.getName() + " (protocol v" + accepted + ")");
+        return true;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (readBuffer.capacity() < needed) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(needed, readBuffer.capacity() * 2));
+            bigger.put(readBuffer);
+            bigger.flip();
+            readBuffer = bigger;
+        }
+    }
+
+    /**
+     * Queues a frame for the event loop to write. Safe to call from any thread.
+     * @return false (and nothing queued) if the client is already maxFrames / maxBytes behind
+     */
+    boolean send(byte[] frame, int maxFrames, long maxBytes) {
+        if (closed.get()) {
+            return true;
+        }
+        if (queuedFrames.get() >= maxFrames || queuedBytes.get() + frame.length > maxBytes) {
+            return false;
+        }
+        queuedFrames.incrementAndGet();
+        queuedBytes.addAndGet(frame.length);
+        // A read-only view: broadcast frames are one array shared by every connection
+        writeQueue.add(ByteBuffer.wrap(frame).asReadOnlyBuffer());
+        loop.requestFlush(this);
+        return true;
+    }
+
+    void send(byte[] frame) {
+        send(frame, Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    int getQueuedFrames() {
+        return queuedFrames.get();
+    }
+
+    long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    // Called on the loop thread; writes queued frames with gathering writes. Once the
+    // queue is empty the handler may queue more of an inventory stream.
+    void flush() throws IOException {
+        if (flushing || closed.get() || key == null || !key.isValid()) {
+            return;
+        }
+        flushing = true;
+        try {
+            flushQueued();
+        } finally {
+            flushing = false;
+        }
+    }
+
+    private void flushQueued() throws IOException {
+        while (true) {
+            // Only this thread removes from the queue, so the head frames stay put
+            int count = 0;
+            for (ByteBuffer buffer : writeQueue) {
+                gather[count++] = buffer;
+                if (count == MAX_GATHER) {
+                    break;
+                }
+            }
+            if (count == 0) {
+                if (handler != null && handler.feedInventory()) {
+                    continue;
+                }
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                return;
+            }
+
+            channel.write(gather, 0, count);
+            for (int i = 0; i < count; i++) {
+                ByteBuffer buffer = gather[i];
+                gather[i] = null;
+                if (buffer.hasRemaining()) {
+                    java.util.Arrays.fill(gather, i, count, null);
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                writeQueue.poll();
+                queuedFrames.decrementAndGet();
+                queuedBytes.addAndGet(-buffer.capacity());
+            }
+        }
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        writeQueue.clear();
+        inbox.clear();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing channel for client " + ID + ": " + e.getMessage());
+        }
+        if (handler != null) {
+            server.removeClient(handler);
+        }
+    }
+
+    void closeQuietly() {
+        if (handler != null) {
+            handler.close();
+        } else {
+            close();
+        }
+    }
+
+    // Detaches from the selector without closing the channel (legacy hand-off)
+    void detach(byte[] prefix) {
+        this.legacyPrefix = prefix;
+        closed.set(true);
+        writeQueue.clear();
+        if (key != null) {
+            key.cancel();
+        }
+    }
+}
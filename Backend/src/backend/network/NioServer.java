@@ -0,0 +1,273 @@
+package backend.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking front end for ShopServer.
+ * The calling thread accepts connections and spreads them round-robin over a
+ * small fixed set of event loops, each owning one Selector. Event loops only read,
+ * decode and write; requests run on ShopServer's request workers (see
+ * NioConnection), so no thread is parked per idle client and a slow request never
+ * holds up the other connections on its loop.
+ */
+class NioServer {
+    private final ShopServer server;
+    private final int port;
+    private final EventLoop[] loops;
+    private ServerSocketChannel serverChannel;
+    private Selector acceptSelector;
+    private volatile boolean running = false;
+    private int nextLoop = 0;
+
+    NioServer(ShopServer server, int port, int loopCount) {
+        this.server = server;
+        this.port = port;
+        this.loops = new EventLoop[Math.max(1, loopCount)];
+    }
+
+    // Blocks the calling thread until stop() is called
+    void run() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        acceptSelector = Selector.open();
+        serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(i);
+            loops[i].start();
+        }
+        running = true;
+        System.out.println("NIO front end listening on port " + port + " with " + loops.length + " event loops");
+
+        while (running) {
+            acceptSelector.select();
+            if (!running) {
+                break;
+            }
+            Iterator<SelectionKey> keys = acceptSelector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (key.isValid() && key.isAcceptable()) {
+                    accept();
+                }
+            }
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                String ID = channel.socket().getInetAddress().getHostAddress();
+                System.out.println("New Client connected: " + ID);
+
+                EventLoop loop = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+                loop.register(new NioConnection(channel, loop, server, ID));
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Error accepting client connection: " + e.getMessage());
+            }
+        }
+    }
+
+    void stop() {
+        running = false;
+        for (EventLoop loop : loops) {
+            if (loop != null) {
+                loop.shutdown();
+            }
+        }
+        try {
+            if (acceptSelector != null) {
+                acceptSelector.wakeup();
+                acceptSelector.close();
+            }
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing NIO server: " + e.getMessage());
+        }
+    }
+
+    class EventLoop extends Thread {
+        private final Selector selector;
+        private final Queue<NioConnection> pendingRegistrations = new ConcurrentLinkedQueue<>();
+        private final Queue<NioConnection> pendingFlushes = new ConcurrentLinkedQueue<>();
+        private final Queue<NioConnection> pendingResumes = new ConcurrentLinkedQueue<>();
+        private final List<NioConnection> pendingHandOffs = new ArrayList<>();
+        private volatile boolean looping = true;
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.setName("ShopServer-EventLoop-" + index);
+            this.setDaemon(true);
+        }
+
+        void register(NioConnection connection) {
+            pendingRegistrations.add(connection);
+            selector.wakeup();
+        }
+
+        void requestFlush(NioConnection connection) {
+            if (Thread.currentThread() == this) {
+                flush(connection);
+            } else {
+                pendingFlushes.add(connection);
+                selector.wakeup();
+            }
+        }
+
+        // A request worker drained a paused connection's inbox; read from it again
+        void requestResume(NioConnection connection) {
+            pendingResumes.add(connection);
+            selector.wakeup();
+        }
+
+        // Legacy object stream client: leave the selector and run a blocking handler instead.
+        // The channel can only switch to blocking once its key is flushed by the next select.
+        void handOffToBlocking(NioConnection connection, byte[] prefix) {
+            connection.detach(prefix);
+            pendingHandOffs.add(connection);
+        }
+
+        private void handOffPending() {
+            if (pendingHandOffs.isEmpty()) {
+                return;
+            }
+            try {
+                selector.selectNow();
+            } catch (IOException e) {
+                System.err.println("Event loop " + getName() + " error: " + e.getMessage());
+            }
+            for (NioConnection connection : pendingHandOffs) {
+                handOff(connection);
+            }
+            pendingHandOffs.clear();
+        }
+
+        private void handOff(NioConnection connection) {
+            SocketChannel channel = connection.getChannel();
+            try {
+                channel.configureBlocking(true);
+                ClientHandler handler = new ClientHandler(channel.socket(), server, connection.getID(), connection.getLegacyPrefix());
+                server.addClient(handler);
+                server.execute(handler);
+                System.out.println("Client " + connection.getID() + " uses the object stream protocol, moved to a handler thread");
+            } catch (IOException e) {
+                System.err.println("Error handing off legacy client " + connection.getID() + ": " + e.getMessage());
+                try {
+                    channel.close();
+                } catch (IOException closeError) {
+                    System.err.println("Error closing channel for client " + connection.getID() + ": " + closeError.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (looping) {
+                try {
+                    selector.select();
+                    registerPending();
+                    flushPending();
+                    resumePending();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        NioConnection connection = (NioConnection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            System.err.println("Error handling client " + connection.getID() + ": " + e.getMessage());
+                            connection.closeQuietly();
+                        }
+                    }
+                    handOffPending();
+                } catch (IOException e) {
+                    if (looping) {
+                        System.err.println("Event loop " + getName() + " error: " + e.getMessage());
+                    }
+                }
+            }
+
+            for (SelectionKey key : selector.keys()) {
+                ((NioConnection) key.attachment()).closeQuietly();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Error closing selector: " + e.getMessage());
+            }
+        }
+
+        private void registerPending() {
+            NioConnection connection;
+            while ((connection = pendingRegistrations.poll()) != null) {
+                try {
+                    SelectionKey key = connection.getChannel().register(selector, SelectionKey.OP_READ, connection);
+                    connection.setKey(key);
+                } catch (IOException e) {
+                    System.err.println("Error registering client " + connection.getID() + ": " + e.getMessage());
+                    connection.close();
+                }
+            }
+        }
+
+        private void flushPending() {
+            NioConnection connection;
+            while ((connection = pendingFlushes.poll()) != null) {
+                flush(connection);
+            }
+        }
+
+        private void resumePending() {
+            NioConnection connection;
+            while ((connection = pendingResumes.poll()) != null) {
+                try {
+                    connection.resumeReading();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Error handling client " + connection.getID() + ": " + e.getMessage());
+                    connection.closeQuietly();
+                }
+            }
+        }
+
+        private void flush(NioConnection connection) {
+            try {
+                connection.flush();
+            } catch (IOException e) {
+                System.err.println("Error writing to client " + connection.getID() + ": " + e.getMessage());
+                connection.closeQuietly();
+            }
+        }
+
+        void shutdown() {
+            looping = false;
+            selector.wakeup();
+        }
+    }
+}
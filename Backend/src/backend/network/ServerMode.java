@@ -0,0 +1,25 @@
+package backend.network;
+
+/**
+ * How ShopServer drives client connections.
+ * THREADED - one pooled platform thread per connection (blocking streams)
+ * VIRTUAL  - one virtual thread per connection (blocking streams, Java 21+)
+ * NIO      - a few selector event loops shared by all connections
+ */
+public enum ServerMode {
+    THREADED,
+    VIRTUAL,
+    NIO;
+
+    public static ServerMode fromString(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return THREADED;
+        }
+        try {
+            return ServerMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown server mode '" + value + "', falling back to THREADED");
+            return THREADED;
+        }
+    }
+}
@@ -3,41 +3,80 @@ import java.io.File;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import backend.models.Inventory;
+import backend.models.OrderJournal;
+import backend.models.OrderRecord;
+import backend.models.OrderStore;
 import backend.models.Product;
+import backend.models.ProductColumns;
+import backend.models.StockLog;
 import backend.models.UserManager;
 
 
 public class ShopServer {
+    /**
+     * In-process subscription to server events (used by the admin panel instead of
+     * polling files). Callbacks run on the thread that caused the event - a client
+     * handler, an event loop or the file watcher - so they must return quickly.
+     */
+    public interface ServerEventListener {
+        // The order is on disk and the client has been told
+        default void onOrderConfirmed(OrderRecord order) {}
+        // A new inventory version was published; changed holds copies of the new rows
+        default void onStockChanged(List<Product> changed, List<String> removed, long version) {}
+        default void onClientConnected(String clientId, int clientCount) {}
+        default void onClientDisconnected(String clientId, int clientCount) {}
+    }
+
     // File watcher thread for products.txt
     private Thread fileWatcherThread;
+    private final File dataDir;
 
     private void startFileWatcher() {
         fileWatcherThread = new Thread(() -> {
             try {
-                java.nio.file.Path dir = java.nio.file.Paths.get("Backend/data");
+                java.nio.file.Path dir = dataDir.toPath();
                 java.nio.file.WatchService watchService = java.nio.file.FileSystems.getDefault().newWatchService();
-                dir.register(watchService, java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY);
+                // CREATE as well: editors (and our snapshots) often save by renaming a temp file
+                dir.register(watchService, java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY,
+                        java.nio.file.StandardWatchEventKinds.ENTRY_CREATE);
 
                 while (running) {
                     java.nio.file.WatchKey key = watchService.take();
-                    for (java.nio.file.WatchEvent<?> event : key.pollEvents()) {
-                        java.nio.file.Path changed = (java.nio.file.Path) event.context();
-                        if (changed.toString().equals("products.txt")) {
-                            System.out.println("products.txt modified, reloading inventory...");
-                            refreshInventoryFromFile();
-                            broadcastInventoryUpdateMessage();
+                    boolean productsTouched = false;
+                    // Editors fire several events per save: keep collecting until the
+                    // directory has been quiet for the debounce window
+                    while (key != null) {
+                        for (java.nio.file.WatchEvent<?> event : key.pollEvents()) {
+                            java.nio.file.Path changed = (java.nio.file.Path) event.context();
+                            if (changed != null && changed.toString().equals("products.txt")) {
+                                productsTouched = true;
+                            }
                         }
+                        key.reset();
+                        key = productsTouched
+                                ? watchService.poll(WATCH_DEBOUNCE_MS, java.util.concurrent.TimeUnit.MILLISECONDS)
+                                : null;
+                    }
+                    // Memory is authoritative; only an edit made outside this server is applied
+                    if (productsTouched && Inventory.hasExternalChanges()) {
+                        applyExternalEdit();
                     }
-                    key.reset();
                 }
             } catch (Exception e) {
                 System.err.println("File watcher error: " + e.getMessage());
@@ -47,36 +86,74 @@ public class ShopServer {
         fileWatcherThread.start();
     }
     private static final int PORT = 8888;
+    private static final long WATCH_DEBOUNCE_MS = Long.getLong("ezshop.watch.debounceMs", 250L);
+    private static final int INVENTORY_CHUNK_BYTES = Integer.getInteger("ezshop.inventory.chunkBytes", 16 * 1024);
+    // Recent INVENTORY_DELTA messages kept for clients reconnecting with a known version
+    private static final int INVENTORY_DELTA_HISTORY = Integer.getInteger("ezshop.inventory.deltaHistory", 256);
+    private static final int NIO_EVENT_LOOPS = Integer.getInteger("ezshop.server.nioThreads",
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+    // Threads running NIO clients' requests, which may block on file I/O or the order journal
+    private static final int NIO_REQUEST_WORKERS = Integer.getInteger("ezshop.server.nioWorkers",
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
     private ServerSocket serverSocket;
-    private boolean running = false;
+    private volatile boolean running = false;
     private ExecutorService threadpool;
+    private final ServerMode mode;
+    private NioServer nioServer;
+    // NIO mode only. Each connection has at most one task queued, so the queue is bounded
+    // by the number of connections
+    private ExecutorService requestWorkers;
     private List<ClientHandler> conncectedClients = Collections.synchronizedList(new ArrayList<>());
 
-    private List<Product> serverInventory;
+    // Stock changes are appended here instead of rewriting products.txt per order
+    private StockLog stockLog;
+    // Completed orders (orders.dat), written by one group-commit writer thread
+    private OrderStore orderStore;
+    private OrderJournal orderJournal;
 
-    // Public method to refresh inventory from file
-    public void refreshInventoryFromFile() {
-        try {
-            // Reload inventory from file
-            backend.models.Inventory.loadFromFile();
-            this.serverInventory = new ArrayList<>(backend.models.Inventory.getAllProducts());
-            System.out.println(" Server inventory refreshed from file: " + this.serverInventory.size() + " products");
-        } catch (Exception e) {
-            System.err.println(" Error refreshing inventory from file: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
+    // The inventory as last published to clients, with its version. Readers take the
+    // reference and never copy; only publishInventoryChanges replaces it (under
+    // publishLock). The version is seeded from the clock so versions keep increasing
+    // across restarts and a reconnecting client never matches a stale one.
+    private volatile ProductColumns publishedInventory = ProductColumns.of(System.currentTimeMillis(), Collections.emptyList());
+    private final ReentrantLock publishLock = new ReentrantLock();
+    // GET_INVENTORY reply for the current version, shared by every client that asks
+    private volatile InventorySnapshot inventorySnapshot;
+    // Last deltas in version order, the newest ending at the published version (guarded by publishLock)
+    private final ArrayDeque<MessageFrames.Shared> deltaHistory = new ArrayDeque<>();
+    private final List<ServerEventListener> eventListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong slowConsumersEvicted = new AtomicLong();
 
     public ShopServer(){
-        threadpool = Executors.newCachedThreadPool();
+        this(ServerMode.fromString(System.getProperty("ezshop.server.mode")));
+    }
+
+    public ShopServer(ServerMode mode){
+        this(mode, new File(System.getProperty("ezshop.dataDir", "Backend/data")));
+    }
+
+    /**
+     * @param dataDir directory holding products.txt, descriptions.txt, users.txt, the
+     *                stock log and the order store; benchmarks pass a scratch copy
+     */
+    public ShopServer(ServerMode mode, File dataDir){
+        this.dataDir = dataDir.getAbsoluteFile();
+        if (mode == ServerMode.VIRTUAL && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("VIRTUAL mode needs Java 21 or later (running "
+                    + System.getProperty("java.version") + "); use THREADED or NIO");
+        }
+        this.mode = mode;
+        threadpool = mode == ServerMode.VIRTUAL
+                ? VirtualThreads.newPerTaskExecutor()
+                : Executors.newCachedThreadPool();
         loadInventory();
     }
 
     private void loadInventory() {
         try {
-            String absolutePath = new File("Backend/data/products.txt").getAbsolutePath();
-            String descriptionPath = new File("Backend/data/descriptions.txt").getAbsolutePath();
-            String usersPath = new File("Backend/data/users.txt").getAbsolutePath();
+            String absolutePath = new File(dataDir, "products.txt").getPath();
+            String descriptionPath = new File(dataDir, "descriptions.txt").getPath();
+            String usersPath = new File(dataDir, "users.txt").getPath();
 
             Inventory.setProductsFilePath(absolutePath);
             Inventory.setDescriptionFilePath(descriptionPath);
@@ -87,9 +164,17 @@ public class ShopServer {
 
             Inventory.loadFromFile();
             UserManager.loadUsers();
+
+            // Replays changes not yet compacted into products.txt
+            stockLog = StockLog.fromSystemProperties(new File(dataDir, "stock.wal").getPath());
+            stockLog.open();
+            orderStore = OrderStore.open(new File(dataDir, "orders.dat").getPath());
+            System.out.println("Orders loaded: " + orderStore.size());
+            orderJournal = OrderJournal.fromSystemProperties(orderStore);
+            orderJournal.start();
             
-            serverInventory = new ArrayList<>(Inventory.getAllProducts());
-            System.out.println("Products loaded: " + serverInventory.size());
+            resetPublishedInventory();
+            System.out.println("Products loaded: " + Inventory.getProductCount());
             System.out.println("Users loaded: " + UserManager.getUserCount());
             
         } catch (Exception e) {
@@ -99,10 +184,14 @@ public class ShopServer {
     }
 
     public void start(){
+        if (mode == ServerMode.NIO) {
+            startNio();
+            return;
+        }
         try {
             this.serverSocket = new ServerSocket(PORT);
             this.running = true;
-            System.out.println("Shop server running on port: " + ShopServer.PORT);
+            System.out.println("Shop server running on port: " + ShopServer.PORT + " (" + mode + " mode)");
 
             // Start file watcher thread
             startFileWatcher();
@@ -114,7 +203,7 @@ public class ShopServer {
                     String ID = clientSocket.getInetAddress().getHostAddress();
 
                     ClientHandler handler = new ClientHandler(clientSocket, this, ID);
-                    conncectedClients.add(handler);
+                    addClient(handler);
 
                     this.threadpool.execute(handler);
                 } catch (IOException e) {
@@ -130,11 +219,53 @@ public class ShopServer {
         }
     }
 
+    private void startNio() {
+        try {
+            this.running = true;
+            System.out.println("Shop server running on port: " + ShopServer.PORT + " (NIO mode)");
+            startFileWatcher();
+
+            this.requestWorkers = Executors.newFixedThreadPool(NIO_REQUEST_WORKERS, runnable -> {
+                Thread thread = new Thread(runnable, "ShopServer-RequestWorker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.nioServer = new NioServer(this, PORT, NIO_EVENT_LOOPS);
+            this.nioServer.run();
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Server error: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
     public void stop(){
         this.running = false;
-        for(ClientHandler client: this.conncectedClients){
+        if (nioServer != null) {
+            nioServer.stop();
+        }
+        if (requestWorkers != null) {
+            requestWorkers.shutdown();
+        }
+        for(ClientHandler client: getConnectedClients()){
             client.close();
         }
+        if (orderJournal != null) {
+            orderJournal.close();
+        }
+        if (orderStore != null) {
+            // Keep the plain-text orders.txt in step for anything that still reads it
+            try {
+                orderStore.exportText(OrderStore.Status.PENDING, new File(dataDir, "orders.txt"));
+            } catch (IOException e) {
+                System.err.println(" Error exporting orders.txt: " + e.getMessage());
+            }
+            orderStore.close();
+        }
+        if (stockLog != null) {
+            stockLog.close();
+        }
 
         conncectedClients.clear();
 
@@ -162,82 +293,448 @@ public class ShopServer {
     }
 
     public List<Product> getInventory(){
-        return this.serverInventory;
-    }
-
-    public synchronized boolean updateProductStock(String productId, int quantity) {
-        for (Product product : this.serverInventory) {
-            if (product.getId().equals(productId)) {
-                int oldStock = product.getStockQuantity();
-                int newStock = oldStock - quantity;
-                
-                // Collision detection: Check if stock would go negative
-                if (newStock < 0) {
-                    System.out.println(" COLLISION DETECTED: Insufficient stock for product " + productId);
-                    System.out.println("   Requested: " + quantity + ", Available: " + oldStock);
-                    return false; // Purchase cannot be completed
+        return Inventory.getAllProducts();
+    }
+
+    // Exact-id lookup through the inventory index (the index itself ignores case)
+    public Product findProduct(String productId) {
+        Product product = Inventory.getProductById(productId);
+        return product != null && product.getId().equals(productId) ? product : null;
+    }
+
+    /**
+     * Reserves stock for every line of an order without taking a lock: each line is
+     * taken with Product.tryReserve (compare-and-set), and if any line fails the ones
+     * already taken are released again, so either every line is reserved or none is.
+     * Nothing is persisted or broadcast here; callers follow up with commitStockChanges.
+     * @return the reserved products in item order, or null if the order failed (see errors)
+     */
+    public List<Product> reserveStock(Map<String, Integer> items, List<String> errors) {
+        List<Product> reserved = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : items.entrySet()) {
+            String productId = entry.getKey();
+            int quantity = entry.getValue();
+
+            Product product = findProduct(productId);
+            if (product == null) {
+                errors.add("Product not found: " + productId);
+            } else if (quantity <= 0) {
+                errors.add("Invalid quantity for " + product.getName() + ": " + quantity);
+            } else if (!product.tryReserve(quantity)) {
+                errors.add("Insufficient stock for " + product.getName() + 
+                          ". Available: " + product.getStockQuantity() + 
+                          ", Requested: " + quantity);
+            } else {
+                reserved.add(product);
+            }
+        }
+        if (!errors.isEmpty()) {
+            // Compensate: hand back the lines that did succeed
+            releaseStock(items, reserved);
+            return null;
+        }
+        return reserved;
+    }
+
+    // Hands back a reservation that was never committed (nothing logged or broadcast yet)
+    public void releaseStock(Map<String, Integer> items, List<Product> reserved) {
+        for (Product product : reserved) {
+            product.release(items.get(product.getId()));
+        }
+    }
+
+    /**
+     * Records reserved stock in the stock log (synced per the configured policy) and
+     * broadcasts the delta; called outside any lock. If the log cannot be written
+     * the reservation is released again and the order must be reported as failed.
+     */
+    public boolean commitStockChanges(Map<String, Integer> items, List<Product> reserved) {
+        try {
+            stockLog.append(reserved);
+        } catch (Exception e) {
+            System.err.println(" Error writing stock log, rolling back order: " + e.getMessage());
+            // Another order's record may already carry this reservation, so the release
+            // is logged (and published) like any other cancellation
+            cancelStockChanges(items, reserved);
+            return false;
+        }
+        List<String> productIds = new ArrayList<>();
+        for (Product product : reserved) {
+            productIds.add(product.getId());
+        }
+        broadcastInventoryChanges(productIds);
+        return true;
+    }
+
+    // Undoes a committed reservation, e.g. when the order could not be journaled
+    public void cancelStockChanges(Map<String, Integer> items, List<Product> reserved) {
+        List<String> productIds = new ArrayList<>();
+        for (Product product : reserved) {
+            product.release(items.get(product.getId()));
+            productIds.add(product.getId());
+        }
+        try {
+            stockLog.append(reserved);
+        } catch (IOException e) {
+            System.err.println(" Error writing stock log: " + e.getMessage());
+        }
+        broadcastInventoryChanges(productIds);
+    }
+
+    public OrderStore getOrderStore() {
+        return orderStore;
+    }
+
+    public OrderJournal getOrderJournal() {
+        return this.orderJournal;
+    }
+
+    // Admin stock edit: applied in memory, logged and broadcast like an order
+    public boolean setProductStock(String productId, int newStock) {
+        Product product = findProduct(productId);
+        if (product == null) {
+            System.out.println(" Product not found: " + productId);
+            return false;
+        }
+        product.setStockQuantity(newStock);
+        try {
+            stockLog.append(Collections.singletonList(product));
+        } catch (IOException e) {
+            System.err.println(" Error writing stock log: " + e.getMessage());
+        }
+        broadcastInventoryChanges(Collections.singletonList(productId));
+        return true;
+    }
+
+    // Admin product creation: added in memory and logged, then snapshotted so products.txt carries the new row
+    public void addProduct(Product product) {
+        Inventory.addProduct(product);
+        try {
+            stockLog.append(Collections.singletonList(product));
+            stockLog.compact();
+        } catch (IOException e) {
+            System.err.println(" Error saving new product to file: " + e.getMessage());
+        }
+        broadcastInventoryChanges(Collections.singletonList(product.getId()));
+    }
+
+    /**
+     * Applies an external edit of products.txt row by row (Inventory.applyFileChanges),
+     * logs the edited rows' stock so a restart does not replay older values over them,
+     * and sends one delta for everything that changed.
+     */
+    private void applyExternalEdit() {
+        List<String> touched = Inventory.applyFileChanges();
+        if (touched.isEmpty()) {
+            return;
+        }
+        System.out.println("products.txt edited externally: " + touched.size() + " rows changed");
+        List<Product> edited = new ArrayList<>();
+        for (String productId : touched) {
+            Product product = findProduct(productId);
+            if (product != null) {
+                edited.add(product);
+            }
+        }
+        try {
+            stockLog.append(edited);
+        } catch (IOException e) {
+            System.err.println(" Error writing stock log: " + e.getMessage());
+        }
+        broadcastInventoryChanges(touched);
+    }
+
+    // Publishes a delta for the products the caller touched
+    public void broadcastInventoryChanges(Collection<String> productIds) {
+        publishInventoryChanges(productIds);
+    }
+
+    public long getInventoryVersion() {
+        return publishedInventory.getVersion();
+    }
+
+    // The inventory exactly as clients were last told it; immutable, so callers may keep it
+    public ProductColumns getPublishedInventory() {
+        return publishedInventory;
+    }
+
+    /**
+     * The inventory as sent to clients for the current version; built by the first
+     * request after a change and reused until the next one.
+     */
+    InventorySnapshot getInventorySnapshot() {
+        ProductColumns published = publishedInventory;
+        InventorySnapshot snapshot = inventorySnapshot;
+        if (snapshot != null && snapshot.getVersion() == published.getVersion()) {
+            return snapshot;
+        }
+        publishLock.lock();
+        try {
+            // No new version can be published while we hold the lock
+            published = publishedInventory;
+            snapshot = inventorySnapshot;
+            if (snapshot == null || snapshot.getVersion() != published.getVersion()) {
+                snapshot = InventorySnapshot.build(published, INVENTORY_CHUNK_BYTES);
+                inventorySnapshot = snapshot;
+            }
+            return snapshot;
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /**
+     * Answers GET_INVENTORY. A client that already holds knownVersion gets
+     * INVENTORY_NOT_MODIFIED when nothing changed since, or the INVENTORY_DELTA
+     * messages since that version while they are still in the history; anyone else
+     * gets the full snapshot, streamed by the client's writer as its queue drains.
+     * The reply is chosen (and a stream registered) under publishLock, so a concurrent
+     * broadcast always lands after it; the snapshot itself is queued outside the lock.
+     * @param knownVersion the client's inventory version, or -1 if it has none
+     */
+    void sendInventory(ClientHandler client, long knownVersion) {
+        publishLock.lock();
+        try {
+            // A client already downloading a snapshot starts over with the current one
+            if (client.isStreamingInventory()) {
+                knownVersion = -1;
+            }
+            long current = publishedInventory.getVersion();
+            if (knownVersion == current) {
+                client.sendMessage(new Message("INVENTORY_NOT_MODIFIED", current));
+                System.out.println("Inventory for client " + client.getID() + " not modified since version " + current);
+                return;
+            }
+
+            long behind = current - knownVersion;
+            if (knownVersion >= 0 && behind > 0 && behind <= deltaHistory.size() && client.acceptsDeltas()) {
+                // The newest `behind` entries take the client from knownVersion to current
+                int skip = deltaHistory.size() - (int) behind;
+                for (MessageFrames.Shared delta : deltaHistory) {
+                    if (skip-- <= 0) {
+                        client.sendMessage(delta);
+                    }
                 }
-                
-                // Update stock
-                product.setStockQuantity(newStock);
-                System.out.println(" Stock updated for product " + productId + " from " + oldStock + " to " + newStock);
-                
-                // Immediately save to file to persist changes
+                System.out.println("Sent " + behind + " inventory deltas to client " + client.getID() + " (version " + knownVersion + " to " + current + ")");
+                return;
+            }
+
+            client.startInventoryStream(getInventorySnapshot());
+        } finally {
+            publishLock.unlock();
+        }
+        client.feedInventory();
+    }
+
+    /**
+     * Bumps the inventory version and sends the rows that changed since the last
+     * published state: INVENTORY_DELTA to clients that asked for deltas, the full
+     * INVENTORY_UPDATE list to everyone else. Runs under publishLock so every
+     * client sees versions in order.
+     * @param candidates product ids to check, or null to compare the whole inventory
+     */
+    private void publishInventoryChanges(Collection<String> candidates) {
+        publishLock.lock();
+        try {
+            ProductColumns published = publishedInventory;
+            long baseVersion = published.getVersion();
+            long version = baseVersion + 1;
+            List<Product> changed = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            ProductColumns next;
+            if (candidates == null) {
+                // Read every live row once into the next columns, then diff column against column
+                next = ProductColumns.of(version, getInventory());
+                for (int row = 0; row < next.size(); row++) {
+                    int publishedRow = published.indexOf(next.getId(row));
+                    if (publishedRow < 0 || !published.matches(publishedRow, next, row)) {
+                        changed.add(next.getProduct(row));
+                    }
+                }
+                for (int row = 0; row < published.size(); row++) {
+                    if (next.indexOf(published.getId(row)) < 0) {
+                        removed.add(published.getId(row));
+                    }
+                }
+            } else {
+                // Known ids go through the inventory index; each live row is read once into a copy
+                for (String id : new LinkedHashSet<>(candidates)) {
+                    Product product = findProduct(id);
+                    int publishedRow = published.indexOf(id);
+                    if (product == null) {
+                        if (publishedRow >= 0) {
+                            removed.add(id);
+                        }
+                        continue;
+                    }
+                    Product copy = copyOf(product);
+                    if (publishedRow < 0 || !published.matches(publishedRow, copy)) {
+                        changed.add(copy);
+                    }
+                }
+                next = changed.isEmpty() && removed.isEmpty() ? published : published.update(version, changed, removed);
+            }
+
+            if (changed.isEmpty() && removed.isEmpty()) {
+                System.out.println("Inventory unchanged, nothing to broadcast");
+                return;
+            }
+
+            Map<String, Object> delta = new HashMap<>();
+            delta.put("baseVersion", baseVersion);
+            delta.put("version", version);
+            delta.put("changed", changed);
+            delta.put("removed", removed);
+            MessageFrames.Shared deltaMsg = new MessageFrames.Shared(new Message("INVENTORY_DELTA", delta));
+
+            publishedInventory = next;
+            deltaHistory.addLast(deltaMsg);
+            if (deltaHistory.size() > INVENTORY_DELTA_HISTORY) {
+                deltaHistory.removeFirst();
+            }
+            broadcast(deltaMsg, next);
+            System.out.println("Inventory version " + version + ": " + changed.size() + " changed, " + removed.size() + " removed");
+            for (ServerEventListener listener : eventListeners) {
                 try {
-                    backend.models.Inventory.saveToFile();
-                    System.out.println(" Inventory saved to file after stock update");
+                    listener.onStockChanged(changed, removed, version);
                 } catch (Exception e) {
-                    System.err.println(" Error saving inventory to file: " + e.getMessage());
+                    System.err.println("Error notifying server listener: " + e.getMessage());
                 }
-                
-                return true; // Update successful
             }
+        } finally {
+            publishLock.unlock();
         }
-        
-        System.out.println(" Product not found: " + productId);
-        return false; // Product not found
     }
 
-
-
-    
-    public void broadcastInventoryUpdateMessage() {
-        List<Product> inventory = getInventory();
-        Message updateMsg = new Message("INVENTORY_UPDATE", inventory);
-        
+    // Clients that take deltas get delta; the full INVENTORY_UPDATE list is only built
+    // from inventory if some client still needs it
+    private void broadcast(MessageFrames.Shared delta, ProductColumns inventory) {
         List<ClientHandler> clientsToRemove = new ArrayList<>();
         int successfulBroadcasts = 0;
+        MessageFrames.Shared update = null;
         
-        synchronized (conncectedClients) {
-            System.out.println("Broadcasting inventory update to " + conncectedClients.size() + " clients...");
-            
-            for (ClientHandler client : conncectedClients) {
-                try {
-                    if (client.isRunning()) {
-                        client.sendMessage(updateMsg);
-                        successfulBroadcasts++;
-                    } else {
-                        clientsToRemove.add(client);
+        // Send from a snapshot so no monitor is held across socket writes. Each message
+        // is encoded once per wire format and the bytes are shared by every recipient
+        List<ClientHandler> recipients = getConnectedClients();
+        System.out.println("Broadcasting inventory update to " + recipients.size() + " clients...");
+
+        for (ClientHandler client : recipients) {
+            try {
+                if (client.isRunning()) {
+                    // Read once: the flag can change under us when the client sends GET_INVENTORY
+                    boolean acceptsDeltas = client.acceptsDeltas();
+                    if (!acceptsDeltas && update == null) {
+                        update = new MessageFrames.Shared(new Message("INVENTORY_UPDATE", inventory.getProducts()));
                     }
-                } catch (Exception e) {
-                    System.err.println("Error broadcasting to client " + client.getID() + ": " + e.getMessage());
+                    client.sendInventoryChange(acceptsDeltas ? delta : update, inventory.getVersion(), !acceptsDeltas);
+                    successfulBroadcasts++;
+                } else {
                     clientsToRemove.add(client);
                 }
+            } catch (Exception e) {
+                System.err.println("Error broadcasting to client " + client.getID() + ": " + e.getMessage());
+                clientsToRemove.add(client);
             }
-            
-            // Clean up disconnected clients
-            for (ClientHandler client : clientsToRemove) {
-                conncectedClients.remove(client);
-                System.out.println("🗑️ Removed disconnected client: " + client.getID());
+        }
+
+        // Clean up disconnected clients
+        for (ClientHandler client : clientsToRemove) {
+            if (conncectedClients.remove(client)) {
+                fireClientDisconnected(client);
             }
+            System.out.println("🗑️ Removed disconnected client: " + client.getID());
         }
         
         System.out.println("Inventory update broadcasted to " + successfulBroadcasts + " clients");
-        System.out.println("Current inventory: " + inventory.size() + " products");
+    }
+
+    private void resetPublishedInventory() {
+        publishLock.lock();
+        try {
+            publishedInventory = ProductColumns.of(publishedInventory.getVersion(), getInventory());
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    private static Product copyOf(Product product) {
+        return new Product(product.getId(), product.getName(), product.getCategory(), product.getPrice(),
+                product.getDescription(), product.getImagePath(), product.getStockQuantity(), product.isAvailable());
+    }
+
+    void addClient(ClientHandler client) {
+        conncectedClients.add(client);
+        int count = conncectedClients.size();
+        for (ServerEventListener listener : eventListeners) {
+            try {
+                listener.onClientConnected(client.getID(), count);
+            } catch (Exception e) {
+                System.err.println("Error notifying server listener: " + e.getMessage());
+            }
+        }
+    }
+
+    public void addEventListener(ServerEventListener listener) {
+        eventListeners.add(listener);
+    }
+
+    public void removeEventListener(ServerEventListener listener) {
+        eventListeners.remove(listener);
+    }
+
+    void fireOrderConfirmed(OrderRecord order) {
+        for (ServerEventListener listener : eventListeners) {
+            try {
+                listener.onOrderConfirmed(order);
+            } catch (Exception e) {
+                System.err.println("Error notifying server listener: " + e.getMessage());
+            }
+        }
+    }
+
+    private void fireClientDisconnected(ClientHandler client) {
+        int count = conncectedClients.size();
+        for (ServerEventListener listener : eventListeners) {
+            try {
+                listener.onClientDisconnected(client.getID(), count);
+            } catch (Exception e) {
+                System.err.println("Error notifying server listener: " + e.getMessage());
+            }
+        }
+    }
+
+    // Runs a blocking handler on the server's thread pool
+    void execute(Runnable task) {
+        this.threadpool.execute(task);
+    }
+
+    // Runs a NIO client's requests off its event loop
+    void executeRequest(Runnable task) {
+        this.requestWorkers.execute(task);
+    }
+
+    // Per-connection helper thread (a client's writer) of the same kind as the handler threads
+    Thread newConnectionThread(Runnable task, String name) {
+        if (mode == ServerMode.VIRTUAL) {
+            return VirtualThreads.newThread(task, name);
+        }
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    void recordSlowConsumerEviction() {
+        slowConsumersEvicted.incrementAndGet();
+    }
+
+    public ServerMode getMode() {
+        return this.mode;
     }
 
     public void removeClient(ClientHandler client){
-        conncectedClients.remove(client);
+        if (conncectedClients.remove(client)) {
+            fireClientDisconnected(client);
+        }
         System.out.println("Client disconnected: " + client.getID() + ". Remaining clients: " + conncectedClients.size());
     }
 
@@ -254,13 +751,32 @@ public class ShopServer {
     public Map<String, Object> getServerStats() {
         Map<String, Object> stats = new java.util.HashMap<>();
         stats.put("connectedClients", conncectedClients.size());
-        stats.put("inventorySize", serverInventory.size());
+        ProductColumns published = publishedInventory;
+        stats.put("inventorySize", published.size());
+        stats.put("productsOutOfStock", published.countOutOfStock());
+        stats.put("orderQueueDepth", orderJournal != null ? orderJournal.getQueueDepth() : 0);
+        // Outbound queues: how far behind the slowest client is, and how many were dropped
+        long queuedBytes = 0;
+        int maxQueuedFrames = 0;
+        for (ClientHandler client : getConnectedClients()) {
+            queuedBytes += client.getQueuedBytes();
+            maxQueuedFrames = Math.max(maxQueuedFrames, client.getQueuedFrames());
+        }
+        stats.put("outboundQueuedBytes", queuedBytes);
+        stats.put("maxOutboundQueueDepth", maxQueuedFrames);
+        stats.put("slowConsumersEvicted", slowConsumersEvicted.get());
+        // Protocol v4 bodies as encoded, before and after deflate (broadcasts count once)
+        stats.put("framesCompressed", FrameCompression.getFramesCompressed());
+        stats.put("bytesBeforeCompression", FrameCompression.getBytesBeforeCompression());
+        stats.put("bytesAfterCompression", FrameCompression.getBytesAfterCompression());
         stats.put("serverRunning", running);
+        stats.put("serverMode", mode.name());
         return stats;
     }
 
+    // Usage: ShopServer [threaded|virtual|nio]  (or -Dezshop.server.mode=...)
     public static void main(String[] args) {
-        ShopServer server = new ShopServer();
+        ShopServer server = args.length > 0 ? new ShopServer(ServerMode.fromString(args[0])) : new ShopServer();
         server.start();
     }
 }
@@ -0,0 +1,67 @@
+package backend.network;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual threads for ServerMode.VIRTUAL, looked up reflectively so the server still
+ * builds and runs (in the other modes) on Java 17. On an older runtime isSupported()
+ * is false and ShopServer refuses to start in VIRTUAL mode.
+ */
+final class VirtualThreads {
+    private static final Method NEW_PER_TASK_EXECUTOR;
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_UNSTARTED;
+    static {
+        Method perTask = null;
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+        try {
+            perTask = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException e) {
+            perTask = null;
+        }
+        NEW_PER_TASK_EXECUTOR = perTask;
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_UNSTARTED = unstarted;
+    }
+
+    private VirtualThreads() {}
+
+    static boolean isSupported() {
+        return NEW_PER_TASK_EXECUTOR != null;
+    }
+
+    static ExecutorService newPerTaskExecutor() {
+        return (ExecutorService) invoke(NEW_PER_TASK_EXECUTOR, null);
+    }
+
+    // An unstarted virtual thread
+    static Thread newThread(Runnable task, String name) {
+        Object builder = invoke(BUILDER_NAME, invoke(OF_VIRTUAL, null), name);
+        return (Thread) invoke(BUILDER_UNSTARTED, builder, task);
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        if (method == null) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later");
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
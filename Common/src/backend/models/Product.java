@@ -0,0 +1,157 @@
+package backend.models;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+public class Product implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String id;
+    private String name;
+    private String category;
+    private double price;
+    private String description;
+    private String imagePath;
+    // Stays a plain int field so the serialized form matches older clients;
+    // concurrent reservations go through STOCK (compare-and-set) instead of a lock
+    private volatile int stockQuantity;
+    private volatile boolean isAvailable;
+
+    private static final VarHandle STOCK;
+    static {
+        try {
+            STOCK = MethodHandles.lookup().findVarHandle(Product.class, "stockQuantity", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    public Product(String[] reference, String des) {
+        this.id = reference[0];
+        this.name = reference[1];
+        this.category = StringPool.CATEGORIES.canonical(reference[2]);
+        this.price = Double.parseDouble(reference[3]);
+        this.imagePath = StringPool.IMAGE_PATHS.canonical(reference[4]);
+        this.stockQuantity = Integer.parseInt(reference[5]);
+        this.isAvailable = Boolean.parseBoolean(reference[6]);
+        this.description = des;
+    }
+
+    public Product(String id, String name, String category, double price, String description,
+                   String imagePath, int stockQuantity, boolean isAvailable) {
+        this.id = id;
+        this.name = name;
+        this.category = StringPool.CATEGORIES.canonical(category);
+        this.price = price;
+        this.description = description;
+        this.imagePath = StringPool.IMAGE_PATHS.canonical(imagePath);
+        this.stockQuantity = stockQuantity;
+        this.isAvailable = isAvailable;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getImagePath() {
+        return imagePath;
+    }
+
+    public int getStockQuantity() {
+        return stockQuantity;
+    }
+
+    public boolean isAvailable() {
+        return isAvailable;
+    }
+    public void setStock(int x){
+        stockQuantity = x ; 
+    }
+
+    public void setStockQuantity(int newQuantity) {
+        this.stockQuantity = newQuantity;
+        // Update availability based on stock quantity
+        this.isAvailable = newQuantity > 0;
+    }
+
+    //   Add method to check if product needs restocking
+    public boolean needsRestocking(int threshold) {
+        return this.stockQuantity <= threshold;
+    }
+
+    //   Add method to decrease stock (alternative approach)
+    public boolean decreaseStock(int quantity) {
+        return tryReserve(quantity);
+    }
+
+    /**
+     * Atomically takes quantity units if that many are in stock.
+     * @return false (and leaves stock untouched) if quantity is not positive or not available
+     */
+    public boolean tryReserve(int quantity) {
+        if (quantity <= 0) {
+            return false;
+        }
+        while (true) {
+            int current = this.stockQuantity;
+            if (current < quantity) {
+                return false; // Not enough stock
+            }
+            if (STOCK.compareAndSet(this, current, current - quantity)) {
+                refreshAvailability();
+                return true;
+            }
+        }
+    }
+
+    // Gives back units taken by tryReserve, e.g. when a later line of the same order fails
+    public void release(int quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+        STOCK.getAndAdd(this, quantity);
+        refreshAvailability();
+    }
+
+    // Re-checks after writing, so a racing reserve/release cannot leave the flag stale
+    private void refreshAvailability() {
+        boolean available;
+        do {
+            available = this.stockQuantity > 0;
+            this.isAvailable = available;
+        } while (available != (this.stockQuantity > 0));
+    }
+
+    // Deserialization bypasses the constructors; share the pooled strings here too
+    private Object readResolve() {
+        category = StringPool.CATEGORIES.canonical(category);
+        imagePath = StringPool.IMAGE_PATHS.canonical(imagePath);
+        return this;
+    }
+
+    @Override
+    public String toString(){
+        String response = "Product of id: " + this.id + ", name: " + this.name + ", category: " + this.category + ", price: " + this.price;
+        return response;
+    }
+
+    public void setAvailable(boolean available) {
+       isAvailable = available;
+    }
+}
@@ -0,0 +1,39 @@
+package backend.models;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances of strings many products (or many copies of a product) share,
+ * so a large catalog holds one copy of each instead of one per product object.
+ * Each pool is bounded: once it is full, new values are returned as given rather
+ * than growing it further.
+ */
+final class StringPool {
+    // Category names: a handful for the whole catalog
+    static final StringPool CATEGORIES = new StringPool(1024);
+    // Image paths: one per product, but every snapshot, delta and cache load makes a new
+    // Product (and a new path string) for the same product
+    static final StringPool IMAGE_PATHS = new StringPool(Integer.getInteger("ezshop.imagePathPool", 64 * 1024));
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>();
+
+    private StringPool(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = pool.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (pool.size() >= maxEntries) {
+            return value;
+        }
+        existing = pool.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+}
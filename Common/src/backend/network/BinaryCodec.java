@@ -0,0 +1,562 @@
+package backend.network;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import backend.models.Product;
+
+/**
+ * Compact binary encoding of Message bodies (protocol version 2).
+ *
+ * Body layout: [type tag][type name if tag is 0][correlation id, version 3 and up]
+ * [payload shape][payload].
+ * Known message types are a single byte tag. The payload shape is chosen from
+ * the data itself, so the common payloads (product lists, productId -> quantity
+ * maps, string maps) get fixed layouts without per-field tags; anything else
+ * falls back to a small tagged value encoding.
+ *
+ * From version 5 a product list is sent as a table: the distinct categories and
+ * image directories come first, and each row refers to them by index, so a
+ * catalog's worth of "/resources/images/Electronics/" is written once per message.
+ */
+public final class BinaryCodec {
+    private static final String[] TYPES = {
+        null,
+        "PING", "PONG",
+        "GET_INVENTORY", "INVENTORY_COUNT", "INVENTORY_CHUNK", "INVENTORY_COMPLETE", "INVENTORY_UPDATE",
+        "PURCHASE", "PURCHASE_CONFIRMED", "PURCHASE_FAILED", "COMPLETE_ORDER",
+        "LOGIN", "LOGIN_SUCCESS", "LOGIN_FAILED",
+        "REGISTER", "REGISTER_SUCCESS", "REGISTER_FAILED",
+        "LOGOUT", "LOGOUT_SUCCESS",
+        "GET_USER_DATA", "USER_DATA_RESPONSE", "USER_DATA_ERROR",
+        "AUTH_REQUIRED",
+        "INVENTORY_DELTA", "INVENTORY_NOT_MODIFIED"
+    };
+    private static final Map<String, Integer> TYPE_TAGS = new HashMap<>();
+    static {
+        for (int i = 1; i < TYPES.length; i++) {
+            TYPE_TAGS.put(TYPES[i], i);
+        }
+    }
+
+    // Payload shapes
+    private static final int SHAPE_NULL = 0;
+    private static final int SHAPE_INT = 1;
+    private static final int SHAPE_STRING = 2;
+    private static final int SHAPE_PRODUCTS = 3;
+    private static final int SHAPE_QUANTITIES = 4;
+    private static final int SHAPE_STRING_MAP = 5;
+    private static final int SHAPE_VALUE = 6;
+    private static final int SHAPE_PRODUCT_TABLE = 7;
+
+    // Tags of the generic value encoding
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_INT = 2;
+    private static final int VALUE_LONG = 3;
+    private static final int VALUE_DOUBLE = 4;
+    private static final int VALUE_TRUE = 5;
+    private static final int VALUE_FALSE = 6;
+    private static final int VALUE_LIST = 7;
+    private static final int VALUE_MAP = 8;
+    private static final int VALUE_PRODUCT = 9;
+
+    private BinaryCodec() {}
+
+    /**
+     * Writes the message body after a 4 byte placeholder and fills in the length, giving a complete frame.
+     */
+    public static byte[] encodeFrame(Message message, byte version) throws IOException {
+        Writer out = new Writer(64);
+        out.position = MessageFrames.HEADER_LENGTH;
+
+        Integer tag = TYPE_TAGS.get(message.getType());
+        if (tag != null) {
+            out.writeByte(tag);
+        } else {
+            out.writeByte(0);
+            out.writeString(message.getType());
+        }
+        if (version >= MessageFrames.VERSION_CORRELATED) {
+            out.writeVarInt(message.getCorrelationId());
+        }
+        writePayload(out, message.getData(), version >= MessageFrames.VERSION_DICTIONARY);
+
+        byte[] frame = out.toByteArray();
+        int length = frame.length - MessageFrames.HEADER_LENGTH;
+        frame[0] = (byte) (length >>> 24);
+        frame[1] = (byte) (length >>> 16);
+        frame[2] = (byte) (length >>> 8);
+        frame[3] = (byte) length;
+        return frame;
+    }
+
+    public static Message decode(byte[] body, int offset, int length, byte version) throws IOException {
+        Reader in = new Reader(body, offset, length);
+        int tag = in.readByte();
+        String type;
+        if (tag == 0) {
+            type = in.readString();
+        } else if (tag < TYPES.length) {
+            type = TYPES[tag];
+        } else {
+            throw new IOException("Unknown message type tag: " + tag);
+        }
+        int correlationId = version >= MessageFrames.VERSION_CORRELATED ? in.readVarInt() : 0;
+        return new Message(type, readPayload(in), correlationId);
+    }
+
+    private static void writePayload(Writer out, Object data, boolean productTables) throws IOException {
+        if (data == null) {
+            out.writeByte(SHAPE_NULL);
+        } else if (data instanceof Integer) {
+            out.writeByte(SHAPE_INT);
+            out.writeVarInt(zigZag((Integer) data));
+        } else if (data instanceof String) {
+            out.writeByte(SHAPE_STRING);
+            out.writeString((String) data);
+        } else if (data instanceof List && allInstances((List<?>) data, Product.class)) {
+            List<?> products = (List<?>) data;
+            if (productTables) {
+                out.writeByte(SHAPE_PRODUCT_TABLE);
+                writeProductTable(out, products);
+                return;
+            }
+            out.writeByte(SHAPE_PRODUCTS);
+            out.writeVarInt(products.size());
+            for (Object product : products) {
+                writeProduct(out, (Product) product);
+            }
+        } else if (data instanceof Map && isStringMap((Map<?, ?>) data, Integer.class)) {
+            Map<?, ?> quantities = (Map<?, ?>) data;
+            out.writeByte(SHAPE_QUANTITIES);
+            out.writeVarInt(quantities.size());
+            for (Map.Entry<?, ?> entry : quantities.entrySet()) {
+                out.writeString((String) entry.getKey());
+                out.writeVarInt(zigZag((Integer) entry.getValue()));
+            }
+        } else if (data instanceof Map && isStringMap((Map<?, ?>) data, String.class)) {
+            Map<?, ?> strings = (Map<?, ?>) data;
+            out.writeByte(SHAPE_STRING_MAP);
+            out.writeVarInt(strings.size());
+            for (Map.Entry<?, ?> entry : strings.entrySet()) {
+                out.writeString((String) entry.getKey());
+                out.writeString((String) entry.getValue());
+            }
+        } else {
+            out.writeByte(SHAPE_VALUE);
+            writeValue(out, data);
+        }
+    }
+
+    private static Object readPayload(Reader in) throws IOException {
+        int shape = in.readByte();
+        switch (shape) {
+            case SHAPE_NULL:
+                return null;
+            case SHAPE_INT:
+                return unZigZag(in.readVarInt());
+            case SHAPE_STRING:
+                return in.readString();
+            case SHAPE_PRODUCTS: {
+                int count = in.readCount();
+                List<Product> products = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    products.add(readProduct(in));
+                }
+                return products;
+            }
+            case SHAPE_PRODUCT_TABLE:
+                return readProductTable(in);
+            case SHAPE_QUANTITIES: {
+                int count = in.readCount();
+                Map<String, Integer> quantities = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    quantities.put(in.readString(), unZigZag(in.readVarInt()));
+                }
+                return quantities;
+            }
+            case SHAPE_STRING_MAP: {
+                int count = in.readCount();
+                Map<String, String> strings = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    strings.put(in.readString(), in.readString());
+                }
+                return strings;
+            }
+            case SHAPE_VALUE:
+                return readValue(in);
+            default:
+                throw new IOException("Unknown payload shape: " + shape);
+        }
+    }
+
+    private static void writeProduct(Writer out, Product product) {
+        out.writeString(product.getId());
+        out.writeString(product.getName());
+        out.writeString(product.getCategory());
+        out.writeDouble(product.getPrice());
+        out.writeString(product.getDescription());
+        out.writeString(product.getImagePath());
+        out.writeVarInt(zigZag(product.getStockQuantity()));
+        out.writeByte(product.isAvailable() ? 1 : 0);
+    }
+
+    private static Product readProduct(Reader in) throws IOException {
+        String id = in.readString();
+        String name = in.readString();
+        String category = in.readString();
+        double price = in.readDouble();
+        String description = in.readString();
+        String imagePath = in.readString();
+        int stock = unZigZag(in.readVarInt());
+        boolean available = in.readByte() != 0;
+        return new Product(id, name, category, price, description, imagePath, stock, available);
+    }
+
+    /*
+     * [row count][category count][categories][directory count][directories], then per row:
+     * id, name, category index, price, description, directory index, file name, stock,
+     * available. Indexes are 1-based; 0 stands for a null category or no directory, in
+     * which case the file name holds the whole image path.
+     */
+    private static void writeProductTable(Writer out, List<?> products) {
+        Map<String, Integer> categories = new LinkedHashMap<>();
+        Map<String, Integer> directories = new LinkedHashMap<>();
+        for (Object element : products) {
+            Product product = (Product) element;
+            if (product.getCategory() != null) {
+                categories.putIfAbsent(product.getCategory(), categories.size() + 1);
+            }
+            String directory = imageDirectory(product.getImagePath());
+            if (directory != null) {
+                directories.putIfAbsent(directory, directories.size() + 1);
+            }
+        }
+
+        out.writeVarInt(products.size());
+        out.writeVarInt(categories.size());
+        for (String category : categories.keySet()) {
+            out.writeString(category);
+        }
+        out.writeVarInt(directories.size());
+        for (String directory : directories.keySet()) {
+            out.writeString(directory);
+        }
+
+        for (Object element : products) {
+            Product product = (Product) element;
+            out.writeString(product.getId());
+            out.writeString(product.getName());
+            out.writeVarInt(product.getCategory() != null ? categories.get(product.getCategory()) : 0);
+            out.writeDouble(product.getPrice());
+            out.writeString(product.getDescription());
+            String imagePath = product.getImagePath();
+            String directory = imageDirectory(imagePath);
+            if (directory != null) {
+                out.writeVarInt(directories.get(directory));
+                out.writeString(imagePath.substring(directory.length()));
+            } else {
+                out.writeVarInt(0);
+                out.writeString(imagePath);
+            }
+            out.writeVarInt(zigZag(product.getStockQuantity()));
+            out.writeByte(product.isAvailable() ? 1 : 0);
+        }
+    }
+
+    private static List<Product> readProductTable(Reader in) throws IOException {
+        int count = in.readCount();
+        String[] categories = readStringTable(in);
+        String[] directories = readStringTable(in);
+
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = in.readString();
+            String name = in.readString();
+            String category = tableEntry(categories, in.readVarInt());
+            double price = in.readDouble();
+            String description = in.readString();
+            String directory = tableEntry(directories, in.readVarInt());
+            String file = in.readString();
+            String imagePath = directory != null ? directory + file : file;
+            int stock = unZigZag(in.readVarInt());
+            boolean available = in.readByte() != 0;
+            products.add(new Product(id, name, category, price, description, imagePath, stock, available));
+        }
+        return products;
+    }
+
+    private static String[] readStringTable(Reader in) throws IOException {
+        int count = in.readCount();
+        String[] table = new String[count];
+        for (int i = 0; i < count; i++) {
+            table[i] = in.readString();
+        }
+        return table;
+    }
+
+    private static String tableEntry(String[] table, int index) throws IOException {
+        if (index == 0) {
+            return null;
+        }
+        if (index < 0 || index > table.length) {
+            throw new IOException("String table index out of range: " + index);
+        }
+        return table[index - 1];
+    }
+
+    // Everything up to and including the last '/', or null if there is no directory part
+    private static String imageDirectory(String imagePath) {
+        if (imagePath == null) {
+            return null;
+        }
+        int slash = imagePath.lastIndexOf('/');
+        return slash >= 0 ? imagePath.substring(0, slash + 1) : null;
+    }
+
+    private static void writeValue(Writer out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(VALUE_STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(VALUE_INT);
+            out.writeVarInt(zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? VALUE_TRUE : VALUE_FALSE);
+        } else if (value instanceof Product) {
+            out.writeByte(VALUE_PRODUCT);
+            writeProduct(out, (Product) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(VALUE_LIST);
+            out.writeVarInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(VALUE_MAP);
+            out.writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            throw new IOException("Cannot encode value of type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(Reader in) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                return in.readString();
+            case VALUE_INT:
+                return unZigZag(in.readVarInt());
+            case VALUE_LONG:
+                return in.readLong();
+            case VALUE_DOUBLE:
+                return in.readDouble();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_PRODUCT:
+                return readProduct(in);
+            case VALUE_LIST: {
+                int count = in.readCount();
+                List<Object> list = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case VALUE_MAP: {
+                int count = in.readCount();
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < count; i++) {
+                    map.put(readValue(in), readValue(in));
+                }
+                return map;
+            }
+            default:
+                throw new IOException("Unknown value tag: " + tag);
+        }
+    }
+
+    private static boolean allInstances(List<?> list, Class<?> type) {
+        for (Object element : list) {
+            if (!type.isInstance(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isStringMap(Map<?, ?> map, Class<?> valueType) {
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!(entry.getKey() instanceof String) || !valueType.isInstance(entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Growable byte buffer; strings are varint length + UTF-8 with -1 for null
+    private static final class Writer {
+        private byte[] buffer;
+        private int position;
+
+        Writer(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > buffer.length) {
+                byte[] bigger = new byte[Math.max(buffer.length * 2, position + extra)];
+                System.arraycopy(buffer, 0, bigger, 0, position);
+                buffer = bigger;
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeDouble(double value) {
+            writeLong(Double.doubleToLongBits(value));
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            byte[] result = new byte[position];
+            System.arraycopy(buffer, 0, result, 0, position);
+            return result;
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private final int limit;
+        private int position;
+
+        Reader(byte[] buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.limit = offset + length;
+        }
+
+        int remaining() {
+            return limit - position;
+        }
+
+        private void require(int count) throws IOException {
+            if (count < 0 || position + count > limit) {
+                throw new IOException("Truncated binary frame");
+            }
+        }
+
+        int readByte() throws IOException {
+            require(1);
+            return buffer[position++] & 0xFF;
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        // Element count of a collection; each element takes at least one byte, so a count
+        // larger than what is left of the frame is corrupt and must not size an allocation
+        int readCount() throws IOException {
+            int count = readVarInt();
+            if (count < 0 || count > remaining()) {
+                throw new IOException("Invalid element count: " + count);
+            }
+            return count;
+        }
+
+        long readLong() throws IOException {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        double readDouble() throws IOException {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        String readString() throws IOException {
+            int length = readVarInt();
+            if (length == -1) {
+                return null;
+            }
+            require(length);
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
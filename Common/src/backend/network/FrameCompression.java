@@ -0,0 +1,184 @@
+package backend.network;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate compression of frame bodies for protocol version 4 and up.
+ *
+ * A compressed-version body is [flag 0][BinaryCodec body], or [flag 1][uncompressed
+ * length][deflated BinaryCodec body]. Only bodies of at least ezshop.compress.minBytes are
+ * compressed, and only if that makes them smaller. Both ends preset the same
+ * dictionary (category names, image path prefixes, recurring keys), so even the
+ * first product list on a connection compresses well.
+ *
+ * The dictionary is fixed rather than built from the catalog because both ends need
+ * identical bytes before the first frame, when the client has no catalog yet; its
+ * image prefixes are the storefront's real image directories (OnS/resources/images),
+ * which is where the admin tool points new products.
+ */
+public final class FrameCompression {
+    private static final int FLAG_PLAIN = 0;
+    private static final int FLAG_DEFLATED = 1;
+    private static final int MIN_BYTES = Integer.getInteger("ezshop.compress.minBytes", 512);
+
+    // Part of the protocol: changing either needs a new protocol version. Each category's
+    // images live in the directory at the same index (clothes under "ClothesImage")
+    private static final String[] CATEGORIES = {
+        "Others", "Stationary", "Shoes", "Groceries", "Clothes", "Electronics"
+    };
+    private static final String[] IMAGE_DIRECTORIES = {
+        "Others", "Stationary", "Shoes", "Groceries", "ClothesImage", "Electronics"
+    };
+    private static final byte[] DICTIONARY = buildDictionary();
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    // Sender side totals over every compressed-version frame this process encoded; a broadcast
+    // is encoded once whatever the number of recipients
+    private static final LongAdder bytesBefore = new LongAdder();
+    private static final LongAdder bytesAfter = new LongAdder();
+    private static final LongAdder framesCompressed = new LongAdder();
+
+    private FrameCompression() {}
+
+    /**
+     * Wraps a BinaryCodec frame in the flag byte, deflating the body if that pays off.
+     */
+    static byte[] compressFrame(byte[] frame) {
+        int headerLength = MessageFrames.HEADER_LENGTH;
+        int bodyLength = frame.length - headerLength;
+        bytesBefore.add(bodyLength);
+
+        if (bodyLength >= MIN_BYTES) {
+            byte[] compressed = deflate(frame, headerLength, bodyLength);
+            if (compressed != null) {
+                bytesAfter.add(compressed.length - headerLength);
+                framesCompressed.increment();
+                return compressed;
+            }
+        }
+
+        byte[] plain = new byte[frame.length + 1];
+        putInt(plain, 0, bodyLength + 1);
+        plain[headerLength] = FLAG_PLAIN;
+        System.arraycopy(frame, headerLength, plain, headerLength + 1, bodyLength);
+        bytesAfter.add(bodyLength + 1);
+        return plain;
+    }
+
+    // A complete frame with the deflated body, or null if deflating did not shrink it
+    private static byte[] deflate(byte[] frame, int offset, int length) {
+        Deflater deflater = DEFLATER.get();
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(frame, offset, length);
+            deflater.finish();
+
+            // Header, flag and uncompressed length come first; give up once it stops paying off
+            int start = MessageFrames.HEADER_LENGTH + 5;
+            byte[] out = new byte[start + length];
+            int written = start;
+            while (!deflater.finished()) {
+                if (written == out.length) {
+                    return null;
+                }
+                written += deflater.deflate(out, written, out.length - written);
+            }
+            if (written >= start + length) {
+                return null;
+            }
+
+            putInt(out, 0, written - MessageFrames.HEADER_LENGTH);
+            out[MessageFrames.HEADER_LENGTH] = FLAG_DEFLATED;
+            putInt(out, MessageFrames.HEADER_LENGTH + 1, length);
+            return java.util.Arrays.copyOf(out, written);
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    /**
+     * Decodes a version 4 or later body, inflating it first if it was compressed.
+     */
+    static Message decode(byte[] body, int offset, int length, byte version) throws IOException {
+        if (length < 1) {
+            throw new IOException("Empty compressed frame");
+        }
+        if (body[offset] == FLAG_PLAIN) {
+            return BinaryCodec.decode(body, offset + 1, length - 1, version);
+        }
+        if (body[offset] != FLAG_DEFLATED || length < 5) {
+            throw new IOException("Bad compressed frame flag: " + body[offset]);
+        }
+
+        int originalLength = getInt(body, offset + 1);
+        MessageFrames.checkLength(originalLength);
+        byte[] inflated = new byte[originalLength];
+        Inflater inflater = INFLATER.get();
+        try {
+            inflater.setInput(body, offset + 5, length - 5);
+            int read = 0;
+            while (read < originalLength) {
+                int n = inflater.inflate(inflated, read, originalLength - read);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new IOException("Compressed frame is truncated");
+                    }
+                }
+                read += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed frame: " + e.getMessage(), e);
+        } finally {
+            inflater.reset();
+        }
+        return BinaryCodec.decode(inflated, 0, originalLength, version);
+    }
+
+    public static long getBytesBeforeCompression() {
+        return bytesBefore.sum();
+    }
+
+    public static long getBytesAfterCompression() {
+        return bytesAfter.sum();
+    }
+
+    public static long getFramesCompressed() {
+        return framesCompressed.sum();
+    }
+
+    // Deflate matches against the end of the dictionary most cheaply, so the most
+    // frequent strings (category names and image paths) go last
+    private static byte[] buildDictionary() {
+        StringBuilder dictionary = new StringBuilder();
+        dictionary.append("No description availableNot providedsuccessmessageerrorsorderIdupdatedProducts")
+                .append("totalItemsbaseVersionversionchangedremovedInsufficient stock for Available: Requested: ");
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            // Stored paths are "/images/<dir>/<name>.jpeg", some with a "/resources" prefix
+            dictionary.append("/resources/images/").append(IMAGE_DIRECTORIES[i]).append('/')
+                    .append(".jpeg/images/").append(IMAGE_DIRECTORIES[i]).append('/')
+                    .append(CATEGORIES[i]);
+        }
+        return dictionary.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] source, int offset) {
+        return ((source[offset] & 0xFF) << 24) | ((source[offset + 1] & 0xFF) << 16)
+                | ((source[offset + 2] & 0xFF) << 8) | (source[offset + 3] & 0xFF);
+    }
+}
@@ -8,9 +8,16 @@ public class Message implements Serializable {
     private String type;
     private Object data;  
     private long timestamp;
+    // Set on requests that expect a reply and copied onto the reply; 0 for everything else
+    private int correlationId;
 
     public Message(String type, Object data) {
+        this(type, data, 0);
+    }
+
+    public Message(String type, Object data, int correlationId) {
         this.type = type;
+        this.correlationId = correlationId;
         this.data = data; 
         this.timestamp = System.currentTimeMillis();
     }
@@ -27,6 +34,10 @@ public class Message implements Serializable {
         return this.timestamp;
     }
 
+    public int getCorrelationId() {
+        return this.correlationId;
+    }
+
     @Override
     public String toString() {
         return "Message{type='" + type + "', data=" + data + ", timestamp=" + timestamp + "}";
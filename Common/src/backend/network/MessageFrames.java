@@ -0,0 +1,174 @@
+package backend.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Length-prefixed framing for Message objects.
+ *
+ * A framed connection opens with MAGIC + requested version (client) answered by
+ * MAGIC + accepted version (server). After that every message is a 4 byte body
+ * length followed by the body. Clients that open with the ObjectOutputStream
+ * header instead are legacy stream clients.
+ *
+ * Version 1 bodies are a serialized Message; version 2 bodies use BinaryCodec.
+ * Version 3 is version 2 plus the message's correlation id, so replies can be
+ * matched to requests (version 1 carries it inside the serialized Message).
+ * Version 4 is version 3 with large bodies deflated (see FrameCompression); an
+ * endpoint started with -Dezshop.compress=false offers at most version 3.
+ * Version 5 is version 4 with product lists sent as tables that name each
+ * category and image directory once (see BinaryCodec); -Dezshop.dictionary=false
+ * offers at most version 4. Because version 5 builds on version 4, an endpoint
+ * without compression has no tables either.
+ */
+public final class MessageFrames {
+    public static final int MAGIC = 0x455A5350; // "EZSP"
+    public static final byte VERSION_SERIALIZED = 1;
+    public static final byte VERSION_BINARY = 2;
+    public static final byte VERSION_CORRELATED = 3;
+    public static final byte VERSION_COMPRESSED = 4;
+    public static final byte VERSION_DICTIONARY = 5;
+    public static final byte MAX_VERSION = VERSION_DICTIONARY;
+    public static final int HANDSHAKE_LENGTH = 5;
+    public static final int HEADER_LENGTH = 4;
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    // First two bytes of every ObjectOutputStream (STREAM_MAGIC)
+    public static final int LEGACY_STREAM_MAGIC = 0xACED;
+    // ObjectOutputStream header length (magic + version) and its TC_RESET marker
+    private static final int LEGACY_STREAM_HEADER = 4;
+    private static final byte TC_RESET = 0x79;
+    private static final boolean COMPRESSION_ENABLED = !"false".equalsIgnoreCase(System.getProperty("ezshop.compress"));
+    private static final boolean DICTIONARY_ENABLED = !"false".equalsIgnoreCase(System.getProperty("ezshop.dictionary"));
+
+    private MessageFrames() {}
+
+    /**
+     * A message that goes to many clients (a broadcast). Each wire format is encoded
+     * at most once, on first use, and every recipient writes the same bytes.
+     */
+    public static final class Shared {
+        private final Message message;
+        private final byte[][] frames = new byte[MAX_VERSION + 1][];
+        private byte[] legacy;
+
+        public Shared(Message message) {
+            this.message = message;
+        }
+
+        public Message getMessage() {
+            return message;
+        }
+
+        // Frame for a framed client speaking the given version; must not be modified
+        public synchronized byte[] frame(byte version) throws IOException {
+            if (frames[version] == null) {
+                frames[version] = encode(message, version);
+            }
+            return frames[version];
+        }
+
+        // Bytes for an object stream client; must not be modified
+        public synchronized byte[] legacy() throws IOException {
+            if (legacy == null) {
+                legacy = encodeLegacy(message);
+            }
+            return legacy;
+        }
+    }
+
+    public static byte[] handshake(byte version) {
+        return ByteBuffer.allocate(HANDSHAKE_LENGTH).putInt(MAGIC).put(version).array();
+    }
+
+    public static byte[] encode(Message message, byte version) throws IOException {
+        if (version >= VERSION_COMPRESSED) {
+            return FrameCompression.compressFrame(BinaryCodec.encodeFrame(message, version));
+        }
+        if (version >= VERSION_BINARY) {
+            return BinaryCodec.encodeFrame(message, version);
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+        bos.write(new byte[HEADER_LENGTH]);
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(message);
+        }
+        byte[] frame = bos.toByteArray();
+        ByteBuffer.wrap(frame).putInt(0, frame.length - HEADER_LENGTH);
+        return frame;
+    }
+
+    /**
+     * The bytes a legacy client's ObjectOutputStream would produce for reset() followed
+     * by writeObject(message), once its stream header has been sent. Lets object stream
+     * clients be written from a ready-made buffer like framed ones.
+     */
+    public static byte[] encodeLegacy(Message message) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(message);
+        }
+        byte[] stream = bos.toByteArray();
+        // A fresh stream has no handles, so its object bytes are exactly what follows a reset
+        stream[LEGACY_STREAM_HEADER - 1] = TC_RESET;
+        return java.util.Arrays.copyOfRange(stream, LEGACY_STREAM_HEADER - 1, stream.length);
+    }
+
+    public static Message decode(byte[] body, int offset, int length, byte version) throws IOException {
+        if (version >= VERSION_COMPRESSED) {
+            return FrameCompression.decode(body, offset, length, version);
+        }
+        if (version >= VERSION_BINARY) {
+            return BinaryCodec.decode(body, offset, length, version);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(body, offset, length))) {
+            Object object = in.readObject();
+            if (!(object instanceof Message)) {
+                throw new IOException("Frame does not contain a Message: " + object);
+            }
+            return (Message) object;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class in frame: " + e.getMessage(), e);
+        }
+    }
+
+    public static Message readFrame(DataInputStream in, byte version) throws IOException {
+        int length = in.readInt();
+        checkLength(length);
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return decode(body, 0, length, version);
+    }
+
+    // Highest version this endpoint offers or accepts
+    public static byte localMaxVersion() {
+        if (!COMPRESSION_ENABLED) {
+            return VERSION_CORRELATED;
+        }
+        return DICTIONARY_ENABLED ? MAX_VERSION : VERSION_COMPRESSED;
+    }
+
+    // Highest version both sides understand; 0 if the request is not usable
+    public static byte negotiate(byte requested) {
+        if (requested < VERSION_SERIALIZED) {
+            return 0;
+        }
+        return (byte) Math.min(requested, localMaxVersion());
+    }
+
+    public static void writeFrame(OutputStream out, byte[] frame) throws IOException {
+        out.write(frame);
+        out.flush();
+    }
+
+    public static void checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+    }
+}
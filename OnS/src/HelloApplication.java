@@ -21,27 +21,34 @@ public class HelloApplication extends Application {
             System.out.println("  HelloApplication: Centralized inventory listener received: " + inventory.size() + " products");
         });
         
+        // With an inventory cached by the last session the storefront shows right away and
+        // the connection reconciles it in the background; otherwise wait for the server
+        boolean cached = networkService.loadCachedInventory();
         CompletableFuture<Boolean> connectionFuture = networkService.connectToServer("127.0.0.1", 8888);
-        
-        connectionFuture.thenRun(() -> {
-            Platform.runLater(() -> {
-                try {
-                    FXMLLoader fxmlLoader = new FXMLLoader(HelloApplication.class.getResource("/resources/fxml/hello-view.fxml"));
-                    Scene scene = new Scene(fxmlLoader.load(), 1200, 700);
-                    
-                    scene.getStylesheets().add(getClass().getResource("/resources/styles/styles.css").toExternalForm());
-                    // Set application icon
-                    stage.getIcons().add(new Image(getClass().getResourceAsStream("/resources/images/Logo.png")));
-                    stage.setTitle("EZ Shop");
-                    stage.setScene(scene);
-                    stage.show();
-                    
-                    System.out.println("  UI loaded successfully!");
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
-        });
+
+        if (cached) {
+            showStorefront(stage);
+        } else {
+            connectionFuture.thenRun(() -> Platform.runLater(() -> showStorefront(stage)));
+        }
+     }
+
+     private void showStorefront(Stage stage) {
+        try {
+            FXMLLoader fxmlLoader = new FXMLLoader(HelloApplication.class.getResource("/resources/fxml/hello-view.fxml"));
+            Scene scene = new Scene(fxmlLoader.load(), 1200, 700);
+            
+            scene.getStylesheets().add(getClass().getResource("/resources/styles/styles.css").toExternalForm());
+            // Set application icon
+            stage.getIcons().add(new Image(getClass().getResourceAsStream("/resources/images/Logo.png")));
+            stage.setTitle("EZ Shop");
+            stage.setScene(scene);
+            stage.show();
+            
+            System.out.println("  UI loaded successfully!");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
      }
 
      @Override
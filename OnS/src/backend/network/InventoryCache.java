@@ -0,0 +1,190 @@
+package backend.network;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import backend.models.Product;
+
+/**
+ * The last complete inventory the client received, kept on disk with its version so
+ * the storefront can start from it and then ask the server only for what changed.
+ *
+ * File layout: magic "EZIC", format byte, inventory version, product count, then each
+ * product's fields. Strings are an int byte length (-1 for null) and UTF-8 bytes, so
+ * a description of any size can be saved (format 1 used writeUTF, which is limited to
+ * 64 KB per string; such caches are ignored and refetched). Saves go to a temp file that is renamed over the old one, on a
+ * background thread; a burst of saves writes only the latest inventory.
+ */
+class InventoryCache {
+    private static final int MAGIC = 0x455A4943; // "EZIC"
+    private static final byte FORMAT = 2;
+
+    private final File file;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "NetworkClient-InventoryCache");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Latest inventory waiting to be written; null when nothing is pending
+    private List<Product> pendingProducts;
+    private long pendingVersion;
+
+    InventoryCache(File file) {
+        this.file = file;
+    }
+
+    static InventoryCache fromSystemProperties() {
+        String path = System.getProperty("ezshop.client.cacheFile",
+                new File(System.getProperty("user.home"), ".ezshop/inventory.cache").getPath());
+        return new InventoryCache(new File(path));
+    }
+
+    /**
+     * Inventory and version loaded from disk, or null if there is no usable cache.
+     */
+    Snapshot load() {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != FORMAT) {
+                System.out.println("Ignoring inventory cache with unknown format: " + file);
+                return null;
+            }
+            long version = in.readLong();
+            int count = in.readInt();
+            // No string or product can be longer than the file
+            long limit = file.length();
+            if (count < 0 || count > limit) {
+                throw new IOException("Invalid product count " + count);
+            }
+            List<Product> products = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                products.add(new Product(readString(in, limit), readString(in, limit), readString(in, limit),
+                        in.readDouble(), readString(in, limit), readString(in, limit), in.readInt(), in.readBoolean()));
+            }
+            return new Snapshot(products, version);
+        } catch (IOException e) {
+            System.out.println("Could not read inventory cache " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Schedules products (copied now) to be written as the cached inventory for version.
+     */
+    void save(List<Product> products, long version) {
+        List<Product> copy = new ArrayList<>(products);
+        synchronized (this) {
+            boolean scheduled = pendingProducts != null;
+            pendingProducts = copy;
+            pendingVersion = version;
+            if (scheduled) {
+                return;
+            }
+        }
+        writer.execute(this::writePending);
+    }
+
+    // Waits briefly for a pending save, e.g. before the application exits
+    void flush() {
+        try {
+            writer.submit(() -> { }).get(2, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.out.println("Inventory cache was not flushed: " + e.getMessage());
+        }
+    }
+
+    private void writePending() {
+        List<Product> products;
+        long version;
+        synchronized (this) {
+            products = pendingProducts;
+            version = pendingVersion;
+            pendingProducts = null;
+        }
+        if (products == null) {
+            return;
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Cannot create " + parent);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(FORMAT);
+                out.writeLong(version);
+                out.writeInt(products.size());
+                for (Product product : products) {
+                    writeString(out, product.getId());
+                    writeString(out, product.getName());
+                    writeString(out, product.getCategory());
+                    out.writeDouble(product.getPrice());
+                    writeString(out, product.getDescription());
+                    writeString(out, product.getImagePath());
+                    out.writeInt(product.getStockQuantity());
+                    out.writeBoolean(product.isAvailable());
+                }
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.out.println("Could not write inventory cache " + file + ": " + e.getMessage());
+            temp.delete();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, long limit) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > limit) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static final class Snapshot {
+        final List<Product> products;
+        final long version;
+
+        Snapshot(List<Product> products, long version) {
+            this.products = products;
+            this.version = version;
+        }
+    }
+}
@@ -1,34 +0,0 @@
-package backend.network;
-
-import java.io.Serializable;
-
-public class Message implements Serializable {
-    private static final long serialVersionUID = 1L;
-    
-    private String type;
-    private Object data;  // CHANGED from "message" to "data"
-    private long timestamp;
-
-    public Message(String type, Object data) {
-        this.type = type;
-        this.data = data;  // CHANGED from message to data
-        this.timestamp = System.currentTimeMillis();
-    }
-
-    public String getType() {
-        return this.type;
-    } 
-
-    public Object getData() {
-        return this.data;  // CHANGED from message to data
-    }
-
-    public long getTimestamp() {
-        return this.timestamp;
-    }
-
-    @Override
-    public String toString() {
-        return "Message{type='" + type + "', data=" + data + ", timestamp=" + timestamp + "}";
-    }
-}
\ No newline at end of file
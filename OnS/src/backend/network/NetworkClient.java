@@ -1,5 +1,9 @@
 package backend.network;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -9,18 +13,37 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import backend.models.Product;
 
 public class NetworkClient {
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+    private static final long REQUEST_TIMEOUT_MS = Long.getLong("ezshop.client.requestTimeoutMs", 10000L);
     private static NetworkClient instance;
     private Socket socket;
     private ObjectOutputStream oos;
     private ObjectInputStream ois;
-    private boolean conneced = false;
+    // Set when the server accepted the framed protocol handshake
+    private DataOutputStream frameOut;
+    private DataInputStream frameIn;
+    private byte protocolVersion = 0;
+    private volatile boolean conneced = false;
     private List<Product> cachedInventory = new ArrayList<>();
+    // Version of cachedInventory as announced by the server; -1 until a full load completes
+    private long inventoryVersion = -1;
+    private boolean loadingInventory = false;
+    private List<Map<?, ?>> pendingDeltas = new ArrayList<>();
+    // Last complete inventory on disk, so the next start can show it before connecting
+    private final InventoryCache inventoryCache = InventoryCache.fromSystemProperties();
     private InternalInventoryUpdateListener updateListener;
+    // Requests sent through request() that are still waiting for their reply, by correlation id
+    private final Map<Integer, CompletableFuture<Message>> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicInteger nextCorrelationId = new AtomicInteger();
     
     private NetworkReader readerThread;
     private NetworkWriter writerThread;
@@ -39,14 +62,18 @@ public class NetworkClient {
 
     public boolean connect(String host, int port){
         try {
-            this.socket = new Socket(host, port);
+            if (!connectFramed(host, port)) {
+                // Server predates the framed protocol: reconnect with plain object streams
+                this.socket = new Socket(host, port);
 
-            oos = new ObjectOutputStream(this.socket.getOutputStream());
-            oos.flush();
-            ois = new ObjectInputStream(this.socket.getInputStream());
+                oos = new ObjectOutputStream(this.socket.getOutputStream());
+                oos.flush();
+                ois = new ObjectInputStream(this.socket.getInputStream());
+            }
 
             this.conneced = true;
-            System.out.println("Successfully connected to the server at host: " + host + " and port: " + port);
+            System.out.println("Successfully connected to the server at host: " + host + " and port: " + port
+                    + (isFramed() ? " (framed protocol v" + protocolVersion + ")" : " (object stream protocol)"));
 
             startThreads();
             return true;
@@ -56,11 +83,51 @@ public class NetworkClient {
         }
     }
 
+    private boolean connectFramed(String host, int port) throws IOException {
+        Socket framedSocket = new Socket(host, port);
+        try {
+            framedSocket.setTcpNoDelay(true);
+            framedSocket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(framedSocket.getOutputStream()));
+            MessageFrames.writeFrame(out, MessageFrames.handshake(MessageFrames.localMaxVersion()));
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(framedSocket.getInputStream()));
+            if (in.readInt() != MessageFrames.MAGIC) {
+                framedSocket.close();
+                return false;
+            }
+            byte accepted = in.readByte();
+            if (accepted < MessageFrames.VERSION_SERIALIZED || accepted > MessageFrames.MAX_VERSION) {
+                framedSocket.close();
+                return false;
+            }
+            framedSocket.setSoTimeout(0);
+
+            this.socket = framedSocket;
+            this.frameOut = out;
+            this.frameIn = in;
+            this.protocolVersion = accepted;
+            return true;
+        } catch (IOException e) {
+            framedSocket.close();
+            return false;
+        }
+    }
+
+    public boolean isFramed() {
+        return this.frameOut != null;
+    }
+
     private void startThreads() {
-        readerThread = new NetworkReader(this, ois);
+        if (isFramed()) {
+            readerThread = new NetworkReader(this, frameIn, protocolVersion);
+            writerThread = new NetworkWriter(this, frameOut, protocolVersion, outgoingMessages);
+        } else {
+            readerThread = new NetworkReader(this, ois);
+            writerThread = new NetworkWriter(this, oos, outgoingMessages);
+        }
         readerThread.start();
-        
-        writerThread = new NetworkWriter(this, oos, outgoingMessages);
         writerThread.start();
         
         System.out.println("Reader and writer thread started");
@@ -69,6 +136,17 @@ public class NetworkClient {
     public void disconnect() {
         this.conneced = false;
         this.outgoingMessages.clear();
+        // A complete cache keeps its version so the next connection can ask for changes only
+        if (this.loadingInventory) {
+            this.inventoryVersion = -1;
+        }
+        this.loadingInventory = false;
+        this.pendingDeltas.clear();
+        this.inventoryCache.flush();
+        for (CompletableFuture<Message> reply : pendingRequests.values()) {
+            reply.completeExceptionally(new IOException("Disconnected from server"));
+        }
+        pendingRequests.clear();
 
         if(readerThread != null){
             readerThread.stopReading();
@@ -84,9 +162,17 @@ public class NetworkClient {
             if(ois != null){
                 ois.close();
             }
+            if(frameOut != null){
+                frameOut.close();
+            }
             if(socket != null && !socket.isClosed()){
                 socket.close();
             }
+            oos = null;
+            ois = null;
+            frameOut = null;
+            frameIn = null;
+            protocolVersion = 0;
             System.out.println("Successfully disconnected the client");
         } catch (Exception e) {
             System.out.println("Error disconnecting the client");
@@ -115,125 +201,98 @@ public class NetworkClient {
         void onPurchaseFailure(Map<String, Object> error);
     }
 
-    public void processServerMessage(Object inputObject) {
+    /**
+     * Handles one message type from the server; gets the client and the message data.
+     */
+    @FunctionalInterface
+    private interface MessageHandler {
+        void handle(NetworkClient client, Object data);
+    }
+
+    // Message type -> handler, looked up once per message
+    private static final Map<String, MessageHandler> MESSAGE_HANDLERS = new HashMap<>();
+    static {
+        MESSAGE_HANDLERS.put("INVENTORY_COUNT", NetworkClient::onInventoryCount);
+        MESSAGE_HANDLERS.put("INVENTORY_CHUNK", NetworkClient::onInventoryChunk);
+        MESSAGE_HANDLERS.put("INVENTORY_COMPLETE", NetworkClient::onInventoryComplete);
+        MESSAGE_HANDLERS.put("INVENTORY_NOT_MODIFIED", NetworkClient::onInventoryNotModified);
+        MESSAGE_HANDLERS.put("INVENTORY_UPDATE", (client, data) -> {
+            if (data instanceof List) {
+                client.updateInventory((List<?>) data);
+            }
+        });
+        MESSAGE_HANDLERS.put("INVENTORY_DELTA", NetworkClient::onInventoryDelta);
+        MESSAGE_HANDLERS.put("PURCHASE_CONFIRMED", (client, data) -> {
+            System.out.println("  Purchase confirmed successfully: " + data);
+            if (client.purchaseListener != null && data instanceof Map) {
+                client.purchaseListener.onPurchaseSuccess((Map<String, Object>) data);
+            }
+        });
+        MESSAGE_HANDLERS.put("PURCHASE_FAILED", (client, data) -> {
+            System.out.println("Purchase failed: " + data);
+            if (client.purchaseListener != null && data instanceof Map) {
+                client.purchaseListener.onPurchaseFailure((Map<String, Object>) data);
+            }
+        });
+        MESSAGE_HANDLERS.put("PONG", (client, data) -> System.out.println("Server responded to ping"));
+        MESSAGE_HANDLERS.put("LOGIN_SUCCESS", (client, data) -> {
+            if (client.authListener != null && data instanceof Map) {
+                client.authListener.onLoginSuccess((Map<String, Object>) data);
+            }
+        });
+        MESSAGE_HANDLERS.put("LOGIN_FAILED", (client, data) -> {
+            if (client.authListener != null && data instanceof Map) {
+                client.authListener.onLoginFailed((Map<String, String>) data);
+            }
+        });
+        MESSAGE_HANDLERS.put("REGISTER_SUCCESS", (client, data) -> {
+            if (client.authListener != null && data instanceof Map) {
+                client.authListener.onRegisterSuccess((Map<String, Object>) data);
+            }
+        });
+        MESSAGE_HANDLERS.put("REGISTER_FAILED", (client, data) -> {
+            if (client.authListener != null && data instanceof Map) {
+                client.authListener.onRegisterFailed((Map<String, Object>) data);
+            }
+        });
+        MESSAGE_HANDLERS.put("USER_DATA_RESPONSE", (client, data) -> {
+            if (client.userDataListener != null && data instanceof Map) {
+                client.userDataListener.onUserDataReceived((Map<String, String>) data);
+            }
+        });
+        MESSAGE_HANDLERS.put("USER_DATA_ERROR", (client, data) -> {
+            if (client.userDataListener != null && data instanceof String) {
+                client.userDataListener.onUserDataError((String) data);
+            }
+        });
+        MESSAGE_HANDLERS.put("AUTH_REQUIRED", (client, data) -> {
+            if (client.authListener != null) {
+                client.authListener.onAuthRequired();
+            }
+        });
+    }
+
+    public void processServerMessage(Message message) {
         try {
-            Class<?> messageClass = inputObject.getClass();
-            java.lang.reflect.Method getTypeMethod = messageClass.getMethod("getType");
-            java.lang.reflect.Method getDataMethod = messageClass.getMethod("getData");
-            
-            String type = (String) getTypeMethod.invoke(inputObject);
-            Object data = getDataMethod.invoke(inputObject);
+            String type = message.getType();
+            Object data = message.getData();
+
+            // A reply to request(): complete its future, then notify the listeners as usual
+            if (message.getCorrelationId() != 0) {
+                CompletableFuture<Message> reply = pendingRequests.remove(message.getCorrelationId());
+                if (reply != null) {
+                    reply.complete(message);
+                }
+            }
             
             System.out.println("Received message: " + type + " with data type: " + 
                               (data != null ? data.getClass().getName() : "null"));
-            
-            
-            switch (type) {
-                case "INVENTORY_COUNT":
-                    if(data instanceof Integer){
-                        int totalProducts = (Integer) data;
-                        System.out.println("Expecting: " + totalProducts + " products");
-                        this.cachedInventory.clear(); 
-                    }
-                    break;
-                    
-                case "INVENTORY_CHUNK":
-                    if(data instanceof List){
-                        List<?> chunk = (List<?>) data;
-                        
-                        
-                        for(Object serverProduct : chunk) {
-                            Product clientProduct = convertServerProductToClient(serverProduct);
-                            if(clientProduct != null) {
-                                cachedInventory.add(clientProduct);
-                                // System.out.println("-> Converted: " + clientProduct); 
-                            } else {
-                                System.out.println("Failed to convert server product: " + serverProduct);
-                            }
-                        }
-                        
-                        System.out.println("Received chunk: " + chunk.size() + " products. Total so far: " + cachedInventory.size());                   
-                    }
-                    break;
-                    
-                case "INVENTORY_COMPLETE":
-                    System.out.println("Inventory loading complete. Total products: " + cachedInventory.size());
-
-                    if (this.updateListener != null) {
-                        updateListener.onInventoryUpdated(new ArrayList<>(cachedInventory));
-                    }
-                    break;
-                    
-                case "INVENTORY_UPDATE":
-                    if (data instanceof List) {
-                        updateInventory((List<?>) data);
-                    }
-                    break;
-                    
-                case "PURCHASE_CONFIRMED":
-                    System.out.println("  Purchase confirmed successfully: " + data);
-                    if (purchaseListener != null && data instanceof Map) {
-                        purchaseListener.onPurchaseSuccess((Map<String, Object>) data);
-                    }
-                    break;
-                
-                case "PURCHASE_FAILED":
-                    System.out.println("Purchase failed: " + data);
-                    if (purchaseListener != null && data instanceof Map) {
-                        purchaseListener.onPurchaseFailure((Map<String, Object>) data);
-                    }
-                    break;
-                
-                case "PONG":
-                    System.out.println("Server responded to ping");
-                    break;
-
-                //   Add new cases for authentication and user data
-                case "LOGIN_SUCCESS":
-                    if (authListener != null && data instanceof Map) {
-                        authListener.onLoginSuccess((Map<String, Object>) data);
-                    }
-                    break;
-                    
-                case "LOGIN_FAILED":
-                    if (authListener != null && data instanceof Map) {
-                        authListener.onLoginFailed((Map<String, String>) data);
-                    }
-                    break;
-                    
-                case "REGISTER_SUCCESS":
-                    if (authListener != null && data instanceof Map) {
-                        authListener.onRegisterSuccess((Map<String, Object>) data);
-                    }
-                    break;
-                    
-                case "REGISTER_FAILED":
-                    if (authListener != null && data instanceof Map) {
-                        authListener.onRegisterFailed((Map<String, Object>) data);
-                    }
-                    break;
-                    
-                case "USER_DATA_RESPONSE":
-                    if (userDataListener != null && data instanceof Map) {
-                        userDataListener.onUserDataReceived((Map<String, String>) data);
-                    }
-                    break;
-                    
-                case "USER_DATA_ERROR":
-                    if (userDataListener != null && data instanceof String) {
-                        userDataListener.onUserDataError((String) data);
-                    }
-                    break;
-                    
-                case "AUTH_REQUIRED":
-                    if (authListener != null) {
-                        authListener.onAuthRequired();
-                    }
-                    break;
-            
-                default:
-                    System.out.println("Server message: " + data + " of type: " + type);
-                    break;
+
+            MessageHandler handler = MESSAGE_HANDLERS.get(type);
+            if (handler != null) {
+                handler.handle(this, data);
+            } else {
+                System.out.println("Server message: " + data + " of type: " + type);
             }
         } catch (Exception e) {
             System.err.println("Error processing server message: " + e.getMessage());
@@ -241,50 +300,81 @@ public class NetworkClient {
         }
     }
 
-    private Product convertServerProductToClient(Object serverProduct) {
-        if(serverProduct == null){
-            System.out.println("Server product is null");
+    private void onInventoryCount(Object data) {
+        if(data instanceof Integer){
+            int totalProducts = (Integer) data;
+            System.out.println("Expecting: " + totalProducts + " products");
+            this.cachedInventory.clear(); 
+            this.inventoryVersion = -1;
+            this.loadingInventory = true;
         }
+    }
 
-        try {
-            Class<?> serverClass = serverProduct.getClass();
-            //  System.out.println("Converting server product of class: " + serverClass.getName());
-
-            String id = (String) serverClass.getMethod("getId").invoke(serverProduct);
-            String name = (String) serverClass.getMethod("getName").invoke(serverProduct);
-            String category = (String) serverClass.getMethod("getCategory").invoke(serverProduct);
-            double price = (double) serverClass.getMethod("getPrice").invoke(serverProduct);
-            String imagePath = (String) serverClass.getMethod("getImagePath").invoke(serverProduct);
-            int stockQuantity = (int) serverClass.getMethod("getStockQuantity").invoke(serverProduct);
-            boolean isAvailable = (boolean) serverClass.getMethod("isAvailable").invoke(serverProduct);
-
-            String description = "";
-            try {
-                description = (String) serverClass.getMethod("getDescription").invoke(serverProduct);
-
-                if(description == null){
-                    description = "No description available";
+    private void onInventoryChunk(Object data) {
+        if(data instanceof List){
+            List<?> chunk = (List<?>) data;
+            
+            for(Object serverProduct : chunk) {
+                Product clientProduct = convertServerProductToClient(serverProduct);
+                if(clientProduct != null) {
+                    cachedInventory.add(clientProduct);
+                } else {
+                    System.out.println("Failed to convert server product: " + serverProduct);
                 }
-            } catch (Exception e) {
-                description = "No description available";
-                System.out.println("Warning: Could not get description for product " + name);
             }
+            
+            System.out.println("Received chunk: " + chunk.size() + " products. Total so far: " + cachedInventory.size());                   
+        }
+    }
+
+    private void onInventoryComplete(Object data) {
+        System.out.println("Inventory loading complete. Total products: " + cachedInventory.size());
+        this.loadingInventory = false;
+        this.inventoryVersion = data instanceof Number ? ((Number) data).longValue() : -1;
+        applyPendingDeltas();
+        saveInventoryCache();
 
-            String[] productData = {
-                id, name, category, String.valueOf(price),
-                imagePath, String.valueOf(stockQuantity), String.valueOf(isAvailable)
-            };
+        if (this.updateListener != null) {
+            updateListener.onInventoryUpdated(new ArrayList<>(cachedInventory));
+        }
+    }
 
-            Product clientProduct = new Product(productData, description);
-            // System.out.println("  Successfully converted: " + name + " (" + category + ")");
-            return clientProduct;
+    private void onInventoryNotModified(Object data) {
+        System.out.println("Inventory unchanged since version " + data + ", keeping " + cachedInventory.size() + " cached products");
+        if (this.updateListener != null) {
+            updateListener.onInventoryUpdated(new ArrayList<>(cachedInventory));
+        }
+    }
 
-        } catch (Exception e) {
-            System.err.println("Error converting server product: " + e.getMessage());
-            System.err.println("Server product class: " + serverProduct.getClass().getName());
-            e.printStackTrace();
+    private void onInventoryDelta(Object data) {
+        if (data instanceof Map) {
+            Map<?, ?> delta = (Map<?, ?>) data;
+            if (loadingInventory) {
+                pendingDeltas.add(delta);
+            } else if (applyDelta(delta)) {
+                saveInventoryCache();
+                if (this.updateListener != null) {
+                    updateListener.onInventoryUpdated(new ArrayList<>(cachedInventory));
+                }
+            }
+        }
+    }
+
+    /**
+     * Both ends share backend.models.Product, so decoded rows are used directly; only
+     * a missing description is filled in for the UI.
+     */
+    private Product convertServerProductToClient(Object serverProduct) {
+        if (!(serverProduct instanceof Product)) {
+            System.out.println("Not a product: " + serverProduct);
             return null;
         }
+        Product product = (Product) serverProduct;
+        if (product.getDescription() != null) {
+            return product;
+        }
+        return new Product(product.getId(), product.getName(), product.getCategory(), product.getPrice(),
+                "No description available", product.getImagePath(), product.getStockQuantity(), product.isAvailable());
     }
 
     private void updateInventory(List<?> newInventory) {
@@ -305,6 +395,101 @@ public class NetworkClient {
         }
     }
 
+    /**
+     * Patches cachedInventory with one INVENTORY_DELTA. Rows are absolute values, so a delta
+     * that was already covered by a full load can be applied again safely.
+     * @return false if the delta was not applied: already covered, or malformed or not
+     *         following our version, in which case a full resync was requested
+     */
+    private boolean applyDelta(Map<?, ?> delta) {
+        Object baseField = delta.get("baseVersion");
+        Object versionField = delta.get("version");
+        Object changed = delta.get("changed");
+        Object removedField = delta.get("removed");
+        if (!(baseField instanceof Number) || !(versionField instanceof Number)
+                || (changed != null && !(changed instanceof List))
+                || (removedField != null && !(removedField instanceof List))) {
+            System.out.println("Malformed inventory delta " + delta.keySet() + ", resyncing");
+            requestInventory();
+            return false;
+        }
+        long baseVersion = ((Number) baseField).longValue();
+        long version = ((Number) versionField).longValue();
+        if (version <= inventoryVersion) {
+            return false;
+        }
+        if (baseVersion != inventoryVersion) {
+            System.out.println("Inventory version gap (have " + inventoryVersion + ", delta from " + baseVersion + "), resyncing");
+            requestInventory();
+            return false;
+        }
+
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < cachedInventory.size(); i++) {
+            positions.put(cachedInventory.get(i).getId(), i);
+        }
+        List<?> changedRows = changed != null ? (List<?>) changed : List.of();
+        for (Object serverProduct : changedRows) {
+            Product clientProduct = convertServerProductToClient(serverProduct);
+            if (clientProduct == null) {
+                continue;
+            }
+            Integer position = positions.get(clientProduct.getId());
+            if (position != null) {
+                cachedInventory.set(position, clientProduct);
+            } else {
+                positions.put(clientProduct.getId(), cachedInventory.size());
+                cachedInventory.add(clientProduct);
+            }
+        }
+        List<?> removed = (List<?>) removedField;
+        if (removed != null && !removed.isEmpty()) {
+            cachedInventory.removeIf(product -> removed.contains(product.getId()));
+        }
+
+        this.inventoryVersion = version;
+        System.out.println("Applied inventory delta to version " + version);
+        return true;
+    }
+
+    // Deltas that arrived while a full load was streaming in
+    private void applyPendingDeltas() {
+        for (Map<?, ?> delta : pendingDeltas) {
+            applyDelta(delta);
+        }
+        pendingDeltas.clear();
+    }
+
+    public long getInventoryVersion() {
+        return this.inventoryVersion;
+    }
+
+    /**
+     * Fills the cached inventory from the on-disk cache, if there is one, so it can be
+     * shown before the server answers. requestInventory() then sends its version and
+     * the server replies with what changed since.
+     * @return true if the inventory was loaded from disk
+     */
+    public boolean loadCachedInventory() {
+        if (this.inventoryVersion >= 0) {
+            return false;
+        }
+        InventoryCache.Snapshot snapshot = inventoryCache.load();
+        if (snapshot == null) {
+            return false;
+        }
+        this.cachedInventory = new ArrayList<>(snapshot.products);
+        this.inventoryVersion = snapshot.version;
+        System.out.println("Loaded " + cachedInventory.size() + " products from the inventory cache (version " + inventoryVersion + ")");
+        return true;
+    }
+
+    private void saveInventoryCache() {
+        if (this.inventoryVersion >= 0) {
+            inventoryCache.save(cachedInventory, inventoryVersion);
+        }
+    }
+
     private void queueMessage(Message message){
         if(conneced){
             try {
@@ -324,11 +509,83 @@ public class NetworkClient {
             return new ArrayList<>();
         }
 
-        Message request = new Message("GET_INVENTORY", null);
-        queueMessage(request);
+        // Tells the server we can apply INVENTORY_DELTA broadcasts, and which version we
+        // already hold so it can answer INVENTORY_NOT_MODIFIED or just the deltas since
+        Map<String, Object> request = new HashMap<>();
+        request.put("acceptsDeltas", true);
+        if (inventoryVersion >= 0) {
+            request.put("knownVersion", inventoryVersion);
+        }
+        queueMessage(new Message("GET_INVENTORY", request));
         return this.cachedInventory;
     }
 
+    /**
+     * Sends a request tagged with a fresh correlation id and returns a future for the
+     * reply the server tags with the same id. Any number of requests can be in flight
+     * on the connection at once. The future fails if the reply does not arrive within
+     * timeoutMs or the connection drops first.
+     */
+    public CompletableFuture<Message> request(String type, Object data, long timeoutMs) {
+        CompletableFuture<Message> reply = new CompletableFuture<>();
+        if (!conneced) {
+            reply.completeExceptionally(new IOException("Not connected to server"));
+            return reply;
+        }
+
+        int correlationId = nextCorrelationId.incrementAndGet();
+        if (correlationId == 0) {
+            // 0 means "no reply expected"; skip it when the counter wraps
+            correlationId = nextCorrelationId.incrementAndGet();
+        }
+        int id = correlationId;
+        pendingRequests.put(id, reply);
+        reply.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((message, error) -> pendingRequests.remove(id));
+        queueMessage(new Message(type, data, id));
+        return reply;
+    }
+
+    public CompletableFuture<Message> request(String type, Object data) {
+        return request(type, data, REQUEST_TIMEOUT_MS);
+    }
+
+    // Completes with LOGIN_SUCCESS or LOGIN_FAILED
+    public CompletableFuture<Message> loginAsync(String username, String password) {
+        Map<String, String> loginData = new HashMap<>();
+        loginData.put("username", username);
+        loginData.put("password", password);
+        return request("LOGIN", loginData);
+    }
+
+    // Completes with REGISTER_SUCCESS or REGISTER_FAILED
+    public CompletableFuture<Message> registerAsync(String username, String password, String email, String fullName, String address, String phone) {
+        Map<String, String> registerData = new HashMap<>();
+        registerData.put("username", username);
+        registerData.put("password", password);
+        registerData.put("email", email);
+        registerData.put("fullName", fullName);
+        registerData.put("address", address);
+        registerData.put("phone", phone);
+        return request("REGISTER", registerData);
+    }
+
+    // Completes with PURCHASE_CONFIRMED, PURCHASE_FAILED or AUTH_REQUIRED
+    public CompletableFuture<Message> purchaseAsync(Map<String, Integer> items) {
+        return request("PURCHASE", items);
+    }
+
+    // Completes with PURCHASE_CONFIRMED, PURCHASE_FAILED or AUTH_REQUIRED
+    public CompletableFuture<Message> completeOrderAsync(Map<String, Object> orderData) {
+        return request("COMPLETE_ORDER", orderData);
+    }
+
+    // Completes with USER_DATA_RESPONSE or USER_DATA_ERROR
+    public CompletableFuture<Message> requestUserDataAsync(String sessionId) {
+        Map<String, String> request = new HashMap<>();
+        request.put("sessionId", sessionId);
+        return request("GET_USER_DATA", request);
+    }
+
     public void sendPurchase(Map<String, Integer> items){
         if(!this.conneced){
             System.out.println("Not connected to server");
@@ -465,16 +722,11 @@ public class NetworkClient {
         void onInventoryUpdated(List<?> cachedInventory);        
     }
 
+    // Goes through the writer thread so it never interleaves with queued messages
     public void sendMessage(Message message){
-         if (isConnected() && oos != null) {
-            try {
-                oos.writeObject(message);
-                oos.flush();
-                System.out.println("Message sent: " + message.getType());
-            } catch (IOException e) {
-                System.err.println("Error sending message: " + e.getMessage());
-                e.printStackTrace();
-            }
+         if (isConnected()) {
+            queueMessage(message);
+            System.out.println("Message queued: " + message.getType());
         } else {
             System.err.println("Cannot send message - not connected to server");
         }
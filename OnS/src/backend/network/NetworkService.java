@@ -29,6 +29,18 @@ public class NetworkService {
         return instance;
     }
 
+    /**
+     * Publishes the inventory saved by the last session, if any, so the storefront can
+     * render before connectToServer() finishes; the server then sends only the changes.
+     */
+    public boolean loadCachedInventory() {
+        if (!client.loadCachedInventory()) {
+            return false;
+        }
+        updateGlobalInventoryAndNotify(new ArrayList<>(client.getCachedInventory()));
+        return true;
+    }
+
     public CompletableFuture<Boolean> connectToServer(String host, int port) {
         return CompletableFuture.supplyAsync(() -> {
             System.out.println("Connecting to server at " + host + ":" + port + "...");
@@ -135,6 +147,28 @@ public class NetworkService {
         }
     }
 
+    // Request/reply API: each call gets its own future, matched to its reply by correlation id
+
+    public CompletableFuture<Message> loginAsync(String username, String password) {
+        return client.loginAsync(username, password);
+    }
+
+    public CompletableFuture<Message> registerAsync(String username, String password, String email, String fullName, String address, String phone) {
+        return client.registerAsync(username, password, email, fullName, address, phone);
+    }
+
+    public CompletableFuture<Message> purchaseAsync(Map<String, Integer> items) {
+        return client.purchaseAsync(items);
+    }
+
+    public CompletableFuture<Message> completeOrderAsync(Map<String, Object> orderData) {
+        return client.completeOrderAsync(orderData);
+    }
+
+    public CompletableFuture<Message> requestUserDataAsync(String sessionId) {
+        return client.requestUserDataAsync(sessionId);
+    }
+
     public boolean isConnected(){
         return this.connected && this.client != null && this.client.isConnected();
     }
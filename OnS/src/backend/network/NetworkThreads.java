@@ -1,5 +1,7 @@
 package backend.network;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -9,7 +11,9 @@ import java.util.concurrent.BlockingQueue;
 class NetworkReader extends Thread{
     private NetworkClient client;
     private ObjectInputStream ois;
-    private boolean running = false;
+    private DataInputStream frameIn;
+    private byte protocolVersion;
+    private volatile boolean running = false;
 
     public NetworkReader(NetworkClient networkClient, ObjectInputStream ois) {
         this.client = networkClient;
@@ -18,29 +22,33 @@ class NetworkReader extends Thread{
         this.setDaemon(true);
     }
 
+    public NetworkReader(NetworkClient networkClient, DataInputStream frameIn, byte protocolVersion) {
+        this.client = networkClient;
+        this.frameIn = frameIn;
+        this.protocolVersion = protocolVersion;
+        this.setName("NetworkClient-Reader");
+        this.setDaemon(true);
+    }
+
     @Override
     public void run(){
         this.running = true;
         System.out.println("Reader thread started");
 
+        if (frameIn != null) {
+            readFrames();
+            System.out.println("Network reader thread stopped");
+            return;
+        }
+
         try {
             Object object;
             while (running && client.isConnected() && (object = this.ois.readObject()) != null) {
-                if(object.getClass().getName().endsWith("Message")){
-                    try {
-                        java.lang.reflect.Method getTypedMethod = object.getClass().getMethod("getType");
-                        java.lang.reflect.Method getDataMethod = object.getClass().getMethod("getData");
-
-                        String type = (String) getTypedMethod.invoke(object);
-                        Object data = getDataMethod.invoke(object);
-
-                        Message clientMsg = new Message(type, data);
-                        // System.out.println("DEBUG: Received message: type=" + type + ", data=" + data);
-                        client.processServerMessage(clientMsg);
-                    } catch (Exception e) {
-                        System.out.println("Error processing server message: " + e.getMessage());
-                        e.printStackTrace();
-                    }
+                // Client and server share backend.network.Message, so the object is used as is
+                if (object instanceof Message) {
+                    client.processServerMessage((Message) object);
+                } else {
+                    System.out.println("Not a Message object: " + object);
                 }
             }
         } catch (IOException | ClassNotFoundException e) {
@@ -53,6 +61,25 @@ class NetworkReader extends Thread{
         System.out.println("Network reader thread stopped");
     }
 
+    private void readFrames() {
+        try {
+            while (running && client.isConnected()) {
+                Message message = MessageFrames.readFrame(frameIn, protocolVersion);
+                try {
+                    client.processServerMessage(message);
+                } catch (Exception e) {
+                    System.out.println("Error processing server message: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        } catch (IOException e) {
+            if(running && client.isConnected()){
+                System.out.println("from the server: " + e.getMessage());
+                client.disconnect();
+            }
+        }
+    }
+
     public void stopReading() {
         this.running = false;
         this.interrupt();
@@ -62,7 +89,9 @@ class NetworkReader extends Thread{
 class NetworkWriter extends Thread{
     private NetworkClient client;
     private ObjectOutputStream oos;
-    private boolean running = false;
+    private DataOutputStream frameOut;
+    private byte protocolVersion;
+    private volatile boolean running = false;
     private BlockingQueue<Message> outgoingMessages;
 
     public NetworkWriter(NetworkClient networkClient, ObjectOutputStream oos, BlockingQueue<Message> messages) {
@@ -73,6 +102,15 @@ class NetworkWriter extends Thread{
         this.setDaemon(true);
     }
 
+    public NetworkWriter(NetworkClient networkClient, DataOutputStream frameOut, byte protocolVersion, BlockingQueue<Message> messages) {
+        this.client = networkClient;
+        this.frameOut = frameOut;
+        this.protocolVersion = protocolVersion;
+        this.outgoingMessages = messages;
+        this.setName("Network-Writer");
+        this.setDaemon(true);
+    }
+
     @Override
     public void run(){
         this.running = true;
@@ -85,9 +123,13 @@ class NetworkWriter extends Thread{
                 if(running && client.isConnected()){
                     // System.out.println("DEBUG: Sending message: type=" + messageToSend.getType() + ", data=" + messageToSend.getData());
                     System.out.println("Sending to server of message: " + messageToSend.getType() + " and of data: " + messageToSend.getData());
-                    oos.writeObject(messageToSend);
-                    oos.flush();
-                    oos.reset(); 
+                    if (frameOut != null) {
+                        MessageFrames.writeFrame(frameOut, MessageFrames.encode(messageToSend, protocolVersion));
+                    } else {
+                        oos.writeObject(messageToSend);
+                        oos.flush();
+                        oos.reset(); 
+                    }
                     System.out.println("Message sent to the server: " + messageToSend.getData());
                 }
             }